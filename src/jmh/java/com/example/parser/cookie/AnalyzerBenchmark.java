@@ -0,0 +1,85 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end analysis of a generated log through {@link MostActiveCookieAnalyzer}, for every
+ * parser engine, with and without sorted seeking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    @Param({"1000000"})
+    int rows;
+
+    @Param({"1000", "100000"})
+    int cookies;
+
+    @Param({"1", "30"})
+    int days;
+
+    @Param({"0", "1.1"})
+    double skew;
+
+    @Param({"STRING", "MAPPED"})
+    LogParserType parser;
+
+    private Path log;
+    private CookieAnalysisRequest request;
+    private final MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+    @Setup(Level.Trial)
+    public void writeLog() throws IOException {
+        SyntheticLog synthetic = new SyntheticLog(rows, cookies, days, skew);
+        log = synthetic.write();
+        request = CookieAnalysisRequest.builder()
+                .filePath(log.toString())
+                .date(synthetic.middleDate().toString())
+                .parser(parser)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        Files.deleteIfExists(log);
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<CookieCount>> fullScan() throws IOException {
+        return analyzer.getCookieCountsByDate(request);
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<CookieCount>> sortedSeek() throws IOException {
+        return analyzer.getCookieCountsByDate(request.toBuilder().sorted(true).build());
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<CookieCount>> topTen() throws IOException {
+        return analyzer.getCookieCountsByDate(request.toBuilder().top(10).build());
+    }
+}
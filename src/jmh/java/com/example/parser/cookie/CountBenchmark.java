@@ -0,0 +1,74 @@
+package com.example.parser.cookie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The aggregate step on its own: counting pre-split cookies into a {@link CookieCountTable},
+ * then ranking a filled table. Counting scores are rows per time unit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountBenchmark {
+
+    static final int ROWS = 100_000;
+
+    @Param({"1000", "100000"})
+    int cookies;
+
+    @Param({"0", "1.1"})
+    double skew;
+
+    private byte[][] rows;
+    private CookieCountTable filled;
+
+    @Setup
+    public void drawRows() {
+        SyntheticLog.CookieSampler sampler = new SyntheticLog.CookieSampler(cookies, skew);
+        Random random = new Random(SyntheticLog.SEED);
+        rows = new byte[ROWS][];
+        filled = new CookieCountTable();
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = SyntheticLog.cookie(sampler.next(random)).getBytes(StandardCharsets.UTF_8);
+            filled.add(rows[i], 0, rows[i].length, 1);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public CookieCountTable count() {
+        CookieCountTable table = new CookieCountTable();
+        for (byte[] row : rows) {
+            table.add(row, 0, row.length, 1);
+        }
+        return table;
+    }
+
+    @Benchmark
+    public List<CookieCount> rankMostActive() {
+        return CookieRanking.mostActive(filled);
+    }
+
+    @Benchmark
+    public List<CookieCount> rankTopTen() {
+        return CookieRanking.top(filled, 10);
+    }
+}
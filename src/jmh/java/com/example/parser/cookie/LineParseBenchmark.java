@@ -0,0 +1,74 @@
+package com.example.parser.cookie;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-line parsing on its own: the string path ({@link CookieLogLine} plus date parsing) against
+ * the byte path ({@link ByteRowScanner} plus the date-prefix lookup). Each invocation parses
+ * {@value #LINES} lines, so scores are lines per time unit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineParseBenchmark {
+
+    static final int LINES = 10_000;
+
+    private String[] lines;
+    private ByteBuffer bytes;
+    private TargetDates dates;
+
+    @Setup
+    public void generateLines() {
+        SyntheticLog synthetic = new SyntheticLog(LINES, 1_000, 1, 1.1);
+        Random random = new Random(SyntheticLog.SEED);
+        lines = new String[LINES];
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            String line = synthetic.line(i, random);
+            lines[i] = line.substring(0, line.length() - 1);
+            all.append(line);
+        }
+        bytes = ByteBuffer.wrap(all.toString().getBytes(StandardCharsets.UTF_8));
+        dates = new TargetDates(List.of(SyntheticLog.LAST_DATE));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseStrings(Blackhole blackhole) {
+        for (String line : lines) {
+            CookieLogLine parsed = CookieLogLine.parse(line);
+            blackhole.consume(dates.indexOf(parsed.date()));
+            blackhole.consume(parsed.cookie());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void scanBytes(Blackhole blackhole) {
+        ByteRowScanner scanner = new ByteRowScanner(row -> {
+            blackhole.consume(dates.indexOf(row.buffer, row.timestampStart));
+            blackhole.consume(row.cookieLength());
+        });
+        scanner.scan(bytes, 0, 0, bytes.limit(), true);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.parser.cookie;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic generator of cookie logs for the benchmarks. The same parameters and seed always
+ * give the same file, so results can be compared across runs and commits.
+ * <p>
+ * Rows are written newest first, as the logs we produce are, spread evenly over {@code days}
+ * dates ending at {@link #LAST_DATE}. Cookies are drawn from {@code cookies} distinct ids with a
+ * Zipf distribution of exponent {@code skew}; a skew of 0 draws them uniformly.
+ */
+final class SyntheticLog {
+
+    static final LocalDate LAST_DATE = LocalDate.of(2018, 12, 31);
+    static final long SEED = 42;
+
+    private final int rows;
+    private final int days;
+    private final CookieSampler sampler;
+
+    SyntheticLog(int rows, int cookies, int days, double skew) {
+        this.rows = rows;
+        this.days = days;
+        this.sampler = new CookieSampler(cookies, skew);
+    }
+
+    /**
+     * @return the date of the middle day, which holds about {@code rows / days} rows
+     */
+    LocalDate middleDate() {
+        return LAST_DATE.minusDays(days / 2);
+    }
+
+    Path write() throws IOException {
+        Path log = Files.createTempFile("cookie-bench", ".csv");
+        log.toFile().deleteOnExit();
+        Random random = new Random(SEED);
+        try (BufferedWriter writer = Files.newBufferedWriter(log, StandardCharsets.UTF_8)) {
+            writer.write("cookie,timestamp\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write(line(i, random));
+            }
+        }
+        return log;
+    }
+
+    /**
+     * @return the {@code i}-th of {@code rows} lines, including its newline
+     */
+    String line(int i, Random random) {
+        long secondsBack = 86_400L * days * i / rows;
+        LocalDate date = LAST_DATE.minusDays(secondsBack / 86_400);
+        long secondOfDay = 86_399 - secondsBack % 86_400;
+        return String.format("%s,%sT%02d:%02d:%02d+00:00\n", cookie(sampler.next(random)), date,
+                secondOfDay / 3_600, secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+
+    static String cookie(int id) {
+        return String.format("c%015x", id * 0x9E3779B1L & 0xffffffffffffL);
+    }
+
+    /**
+     * Draws cookie ids by inverting a precomputed cumulative distribution.
+     */
+    static final class CookieSampler {
+
+        private final double[] cumulative;
+
+        CookieSampler(int cookies, double skew) {
+            cumulative = new double[cookies];
+            double total = 0;
+            for (int i = 0; i < cookies; i++) {
+                total += 1 / Math.pow(i + 1, skew);
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < cookies; i++) {
+                cumulative[i] /= total;
+            }
+        }
+
+        int next(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+        }
+    }
+}
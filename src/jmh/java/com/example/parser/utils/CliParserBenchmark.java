@@ -0,0 +1,37 @@
+package com.example.parser.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.parser.cookie.CookieAnalysisRequest;
+
+/**
+ * Parsing a typical command line into a request, which every CLI run and server query pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CliParserBenchmark {
+
+    private static final String[] ARGS = {
+            "-f", "cookie_log.csv", "-d", "2018-12-09", "--from", "2018-12-01", "--to", "2018-12-07",
+            "--parser", "mapped", "--threads", "4", "--top", "10"};
+
+    private final CliParser cliParser = new CliParser();
+
+    @Benchmark
+    public CookieAnalysisRequest parse() {
+        return cliParser.parse(ARGS);
+    }
+}
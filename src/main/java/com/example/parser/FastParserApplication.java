@@ -0,0 +1,30 @@
+package com.example.parser;
+
+import com.example.parser.cookie.CookieApplication;
+import com.example.parser.cookie.MostActiveCookieAnalyzer;
+import com.example.parser.utils.CliParser;
+
+/**
+ * Runs the CLI without starting a Spring context. The application only needs a {@link CliParser}
+ * and a {@link MostActiveCookieAnalyzer}, so wiring them by hand skips component scanning and
+ * auto-configuration, which dominate the run time of a query over a small log.
+ * <p>
+ * Behaves like {@link ParserApplication}; logging is configured from {@code logback-cli.xml}
+ * since Spring Boot's logging setup is not there to do it.
+ */
+public class FastParserApplication {
+
+	private static final String LOGBACK_CONFIGURATION = "logback.configurationFile";
+
+	public static void main(String[] args) {
+		if (System.getProperty(LOGBACK_CONFIGURATION) == null) {
+			System.setProperty(LOGBACK_CONFIGURATION, "logback-cli.xml");
+		}
+		createApplication().run(args);
+	}
+
+	static CookieApplication createApplication() {
+		return new CookieApplication(new CliParser(), new MostActiveCookieAnalyzer());
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.example.parser.cookie;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-free row splitter over raw log bytes. Each well-formed row is handed to a
+ * {@link RowHandler} as offsets into the buffer, so neither the line nor the timestamp is ever
+ * decoded and rows can be counted without allocating.
+ * <p>
+ * Trimming and splitting follow {@link CookieLogLine}: bytes up to {@code ' '} count as
+ * whitespace, the cookie ends at the first comma and the timestamp must hold at least a
+ * {@code yyyy-MM-dd} prefix. Checking the date itself is up to the handler.
+ */
+final class ByteRowScanner {
+
+    /**
+     * Receives the rows found by a {@link ByteRowScanner}. The {@link Row} is reused for every
+     * row and is only valid during the call.
+     */
+    interface RowHandler {
+
+        void onRow(Row row);
+    }
+
+    private final RowHandler handler;
+    private final ScanStats stats;
+    private final Row row = new Row();
+
+    ByteRowScanner(RowHandler handler) {
+        this(handler, new ScanStats());
+    }
+
+    /**
+     * @param stats counts the rows scanned and those skipped as blank or malformed; the handler
+     *              accounts for the rest
+     */
+    ByteRowScanner(RowHandler handler, ScanStats stats) {
+        this.handler = handler;
+        this.stats = stats;
+    }
+
+    /**
+     * Hands every row in {@code [from, to)} of the buffer to the handler. Unless {@code endOfInput}
+     * is set, a trailing line without a newline is left for the caller to pass again with more bytes.
+     *
+     * @param bufferOffset file offset of index 0 of the buffer, reported through {@link Row#offset()}
+     * @return the offset just after the last line consumed
+     */
+    int scan(ByteBuffer buffer, long bufferOffset, int from, int to, boolean endOfInput) {
+        row.buffer = buffer;
+        row.bufferOffset = bufferOffset;
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                splitRow(buffer, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (endOfInput && lineStart < to) {
+            splitRow(buffer, lineStart, to);
+            lineStart = to;
+        }
+        return lineStart;
+    }
+
+    private void splitRow(ByteBuffer buffer, int lineStart, int lineEnd) {
+        int start = lineStart;
+        int end = lineEnd;
+        while (start < end && isWhitespace(buffer.get(start)))
+            start++;
+        while (end > start && isWhitespace(buffer.get(end - 1)))
+            end--;
+        stats.rowsScanned++;
+        if (start == end) {
+            stats.blankRows++;
+            return;
+        }
+
+        int comma = start;
+        while (comma < end && buffer.get(comma) != ',')
+            comma++;
+        if (comma == end) {
+            stats.malformedRows++;
+            return;
+        }
+
+        int timestamp = comma + 1;
+        while (timestamp < end && isWhitespace(buffer.get(timestamp)))
+            timestamp++;
+        if (end - timestamp < TargetDates.DATE_LENGTH) {
+            stats.malformedRows++;
+            return;
+        }
+
+        int cookieEnd = comma;
+        while (cookieEnd > start && isWhitespace(buffer.get(cookieEnd - 1)))
+            cookieEnd--;
+
+        row.lineStart = lineStart;
+        row.lineEnd = lineEnd;
+        row.cookieStart = start;
+        row.cookieEnd = cookieEnd;
+        row.timestampStart = timestamp;
+        row.timestampEnd = end;
+        handler.onRow(row);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return (b & 0xff) <= ' ';
+    }
+
+    /**
+     * A view of the current row. Offsets are buffer indexes; the timestamp holds at least
+     * {@value TargetDates#DATE_LENGTH} bytes.
+     */
+    static final class Row {
+
+        ByteBuffer buffer;
+        long bufferOffset;
+        int lineStart;
+        int lineEnd;
+        int cookieStart;
+        int cookieEnd;
+        int timestampStart;
+        int timestampEnd;
+        private byte[] cookieBytes = new byte[64];
+
+        /**
+         * @return the file offset of the start of the line
+         */
+        long offset() {
+            return bufferOffset + lineStart;
+        }
+
+        int cookieLength() {
+            return cookieEnd - cookieStart;
+        }
+
+        /**
+         * Copies the cookie into a scratch array reused across rows.
+         *
+         * @return the scratch array, holding the cookie in its first {@link #cookieLength()} bytes
+         */
+        byte[] cookieBytes() {
+            int length = cookieLength();
+            if (length > cookieBytes.length) {
+                cookieBytes = new byte[Math.max(length, cookieBytes.length * 2)];
+            }
+            buffer.get(cookieStart, cookieBytes, 0, length);
+            return cookieBytes;
+        }
+
+        /**
+         * Decodes the cookie into a new {@code String}.
+         */
+        String cookie() {
+            return new String(cookieBytes(), 0, cookieLength(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Decodes the timestamp into a new {@code String}.
+         */
+        String timestamp() {
+            byte[] timestamp = new byte[timestampEnd - timestampStart];
+            buffer.get(timestampStart, timestamp);
+            return new String(timestamp, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.parser.cookie;
+
+import java.util.List;
+
+/**
+ * Exact counts of a fixed set of candidate cookies, for confirming the counts of a
+ * {@link HeavyHitterSketch} in a second pass. Rows of other cookies are ignored, so memory stays
+ * bounded by the number of candidates.
+ */
+final class CandidateCounter implements CookieCounter<CandidateCounter> {
+
+    private final CookieCountTable counts = new CookieCountTable();
+
+    CandidateCounter(List<String> candidates) {
+        for (String candidate : candidates) {
+            counts.add(candidate, 0);
+        }
+    }
+
+    @Override
+    public void increment(byte[] key, int offset, int length) {
+        increment(key, offset, length, 1);
+    }
+
+    @Override
+    public void increment(byte[] key, int offset, int length, int count) {
+        int id = counts.find(key, offset, length);
+        if (id >= 0) {
+            counts.addCount(id, count);
+        }
+    }
+
+    @Override
+    public void addAll(CandidateCounter other) {
+        counts.addAll(other.counts);
+    }
+
+    @Override
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * @return the exact counts of the candidates, with 0 for those not seen
+     */
+    CookieCountTable counts() {
+        return counts;
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.parser.cookie;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A log converted once into columns, so that repeated queries neither parse text nor hash cookies.
+ * Each row is a cookie id into a dictionary of the log's distinct cookies and an epoch day; rows
+ * are stored in blocks of {@value #BLOCK_ROWS}, each recording the range of days it holds, so a
+ * query maps and reads only the blocks that may hold its dates. Counting adds up rows per cookie id
+ * and looks up the cookies of the ids seen once the blocks are read.
+ * <p>
+ * Layout (big-endian): a header {@code magic, version}; the blocks, each a column of
+ * {@code rowCount} cookie ids followed by its days run-length encoded as {@code (epochDay, rows)}
+ * pairs; the dictionary, {@code cookieCount + 1} offsets into the UTF-8 cookie bytes that follow
+ * them; a directory of {@code (offset, rowCount, runCount, minEpochDay, maxEpochDay)} entries; and
+ * a footer {@code rowCount, cookieCount, dictionaryOffset, directoryOffset}.
+ */
+final class ColumnarLog {
+
+    private static final int MAGIC = 0x434B434C; // "CKCL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FOOTER_SIZE = 28;
+    private static final int BLOCK_ROWS = 64 * 1024;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final int INVALID_DAY = Integer.MIN_VALUE;
+    /** Most dictionary entries whose {@code cookieCount + 1} offsets fit one mapped buffer. */
+    private static final int MAX_COOKIES = Integer.MAX_VALUE / Integer.BYTES - 1;
+
+    /**
+     * Where a block lives in the file and the days its rows fall on.
+     */
+    private record Block(long offset, int rowCount, int runCount, int minEpochDay, int maxEpochDay) {
+
+        long size() {
+            return (long) rowCount * Integer.BYTES + (long) runCount * 2 * Integer.BYTES;
+        }
+    }
+
+    private final Path path;
+    private final long rowCount;
+    private final int cookieCount;
+    private final long dictionaryOffset;
+    private final List<Block> blocks;
+
+    private ColumnarLog(Path path, long rowCount, int cookieCount, long dictionaryOffset, List<Block> blocks) {
+        this.path = path;
+        this.rowCount = rowCount;
+        this.cookieCount = cookieCount;
+        this.dictionaryOffset = dictionaryOffset;
+        this.blocks = blocks;
+    }
+
+    /**
+     * @return whether {@code path} holds a columnar log, judging by its magic bytes
+     */
+    static boolean isColumnar(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] magic = in.readNBytes(Integer.BYTES);
+            return magic.length == Integer.BYTES && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    static ColumnarLog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + FOOTER_SIZE)
+                throw new IOException("Truncated columnar log: " + path);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a columnar log: " + path);
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported columnar log version " + version + ": " + path);
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            channel.read(footer, channel.size() - FOOTER_SIZE);
+            footer.flip();
+            long rowCount = footer.getLong();
+            int cookieCount = footer.getInt();
+            long dictionaryOffset = footer.getLong();
+            long directoryOffset = footer.getLong();
+
+            ByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryOffset,
+                    channel.size() - FOOTER_SIZE - directoryOffset);
+            int blockCount = directory.getInt();
+            List<Block> blocks = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                blocks.add(new Block(directory.getLong(), directory.getInt(), directory.getInt(), directory.getInt(),
+                        directory.getInt()));
+            }
+            return new ColumnarLog(path, rowCount, cookieCount, dictionaryOffset, blocks);
+        }
+    }
+
+    /**
+     * Reads the whole log once, plain or compressed, and writes it to {@code output} in columnar
+     * form, replacing any previous file atomically. Rows without a valid date are left out and
+     * counted in {@code stats} like the rows a scan skips.
+     */
+    static ColumnarLog convert(Path logPath, Path output, ScanStats stats) throws IOException {
+        Path tempPath = output.resolveSibling(output.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempPath), IO_BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            BlockWriter writer = new BlockWriter(out, stats);
+            ByteRowScanner scanner = new ByteRowScanner(writer, stats);
+            LogCompression compression = LogCompression.detect(logPath);
+            if (compression == LogCompression.NONE) {
+                try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                    MappedLogParser.scan(channel, LogRange.data(channel), scanner);
+                }
+            } else {
+                try (InputStream in = compression.open(logPath)) {
+                    StreamLogScanner.scan(in, scanner);
+                }
+            }
+            stats.addBytesRead(Files.size(logPath));
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(output);
+    }
+
+    long rowCount() {
+        return rowCount;
+    }
+
+    int cookieCount() {
+        return cookieCount;
+    }
+
+    int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * @return whether the days of any block span one of the dates
+     */
+    boolean mayContainAnyOf(TargetDates dates) {
+        for (Block block : blocks) {
+            if (mayContain(block, dates))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the rows of the target dates into {@code countsByDate}, reading only the blocks that
+     * may hold them. Rows are added up per cookie id in a table of the ids seen on each date, sized
+     * by the cookies of the date rather than of the whole dictionary, then handed to the counters
+     * once per distinct cookie in dictionary order; a {@link HeavyHitterSketch} thus sees each
+     * cookie's rows at once rather than in log order.
+     */
+    void count(TargetDates dates, List<? extends CookieCounter<?>> countsByDate, ScanStats stats)
+            throws IOException {
+        IdCounts[] countsById = new IdCounts[dates.size()];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (Block block : blocks) {
+                if (!mayContain(block, dates))
+                    continue;
+
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, block.offset(), block.size());
+                stats.addBytesRead(block.size());
+                stats.rowsScanned += block.rowCount();
+                IntBuffer ids = mapped.asIntBuffer();
+                int row = 0;
+                for (int run = 0; run < block.runCount(); run++) {
+                    int runStart = block.rowCount() + 2 * run;
+                    int epochDay = ids.get(runStart);
+                    int runRows = ids.get(runStart + 1);
+                    int dateIndex = dates.indexOf(LocalDate.ofEpochDay(epochDay));
+                    if (dateIndex < 0) {
+                        stats.otherDateRows += runRows;
+                    } else {
+                        if (countsById[dateIndex] == null) {
+                            countsById[dateIndex] = new IdCounts();
+                        }
+                        IdCounts counts = countsById[dateIndex];
+                        for (int i = row; i < row + runRows; i++) {
+                            counts.increment(ids.get(i));
+                        }
+                        stats.rowsMatched += runRows;
+                    }
+                    row += runRows;
+                }
+            }
+            addCounts(channel, countsById, countsByDate, stats);
+        }
+    }
+
+    private static boolean mayContain(Block block, TargetDates dates) {
+        for (int i = 0; i < dates.size(); i++) {
+            long epochDay = dates.get(i).toEpochDay();
+            if (epochDay >= block.minEpochDay() && epochDay <= block.maxEpochDay())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks up the cookie of every id counted and adds its counts to the counters.
+     */
+    private void addCounts(FileChannel channel, IdCounts[] countsById,
+            List<? extends CookieCounter<?>> countsByDate, ScanStats stats) throws IOException {
+        ByteBuffer offsets = null;
+        ByteBuffer cookies = null;
+        byte[] key = new byte[64];
+        for (int date = 0; date < countsById.length; date++) {
+            IdCounts counts = countsById[date];
+            if (counts == null)
+                continue;
+            if (offsets == null) {
+                long offsetsSize = (long) (cookieCount + 1) * Integer.BYTES;
+                offsets = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, offsetsSize);
+                cookies = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset + offsetsSize,
+                        offsets.getInt(cookieCount * Integer.BYTES));
+                stats.addBytesRead(offsetsSize + cookies.capacity());
+            }
+            CookieCounter<?> counter = countsByDate.get(date);
+            for (long entry : counts.byId()) {
+                int id = (int) (entry >>> 32);
+                int start = offsets.getInt(id * Integer.BYTES);
+                int length = offsets.getInt((id + 1) * Integer.BYTES) - start;
+                if (length > key.length) {
+                    key = new byte[Math.max(length, key.length * 2)];
+                }
+                cookies.get(start, key, 0, length);
+                counter.increment(key, 0, length, (int) entry);
+            }
+        }
+    }
+
+    /**
+     * Row counts of the cookie ids seen on one date, in an open-addressing (linear probing) table
+     * of ids that is at most half full.
+     */
+    private static final class IdCounts {
+
+        /** {@code id + 1} of each slot; 0 marks an empty slot. */
+        private int[] ids = new int[64];
+        private int[] counts = new int[64];
+        private int size;
+
+        void increment(int id) {
+            int mask = ids.length - 1;
+            int slot = (id * 0x9E3779B9) & mask;
+            while (ids[slot] != 0 && ids[slot] != id + 1) {
+                slot = (slot + 1) & mask;
+            }
+            if (ids[slot] == 0) {
+                ids[slot] = id + 1;
+                size++;
+            }
+            counts[slot]++;
+            if (size * 2 > ids.length) {
+                rehash();
+            }
+        }
+
+        /**
+         * @return every id counted with its count, packed as {@code id << 32 | count}, by ascending id
+         */
+        long[] byId() {
+            long[] entries = new long[size];
+            int n = 0;
+            for (int slot = 0; slot < ids.length; slot++) {
+                if (ids[slot] != 0) {
+                    entries[n++] = (long) (ids[slot] - 1) << 32 | counts[slot];
+                }
+            }
+            Arrays.sort(entries);
+            return entries;
+        }
+
+        private void rehash() {
+            int[] oldIds = ids;
+            int[] oldCounts = counts;
+            ids = new int[oldIds.length * 2];
+            counts = new int[oldIds.length * 2];
+            int mask = ids.length - 1;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] == 0)
+                    continue;
+                int slot = ((oldIds[i] - 1) * 0x9E3779B9) & mask;
+                while (ids[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = oldIds[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Assigns dictionary ids to the rows of the log and writes them out a block at a time, followed
+     * by the dictionary, the directory and the footer.
+     */
+    private static final class BlockWriter implements ByteRowScanner.RowHandler {
+
+        private final DataOutputStream out;
+        private final ScanStats stats;
+        private final CookieCountTable dictionary = new CookieCountTable();
+        private final int[] ids = new int[BLOCK_ROWS];
+        private final int[] epochDays = new int[BLOCK_ROWS];
+        private final ByteBuffer column = ByteBuffer.allocate(BLOCK_ROWS * 3 * Integer.BYTES);
+        private final List<Block> blocks = new ArrayList<>();
+        private long position = HEADER_SIZE;
+        private int rows;
+        private long rowCount;
+        private int lastKey = -1;
+        private int lastEpochDay = INVALID_DAY;
+
+        BlockWriter(DataOutputStream out, ScanStats stats) {
+            this.out = out;
+            this.stats = stats;
+        }
+
+        @Override
+        public void onRow(ByteRowScanner.Row row) {
+            int key = TargetDates.dateKey(row.buffer, row.timestampStart);
+            if (key != lastKey) {
+                lastEpochDay = epochDay(key);
+                lastKey = key;
+            }
+            if (lastEpochDay == INVALID_DAY) {
+                stats.invalidDate(row.timestamp());
+                return;
+            }
+
+            ids[rows] = dictionary.add(row.cookieBytes(), 0, row.cookieLength(), 1);
+            epochDays[rows] = lastEpochDay;
+            stats.rowsMatched++;
+            if (++rows == BLOCK_ROWS) {
+                try {
+                    writeBlock();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private static int epochDay(int key) {
+            if (key < 0)
+                return INVALID_DAY;
+            try {
+                return (int) LocalDate.of(key / 10_000, key / 100 % 100, key % 100).toEpochDay();
+            } catch (DateTimeException e) {
+                return INVALID_DAY;
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (rows == 0)
+                return;
+
+            column.clear();
+            for (int i = 0; i < rows; i++) {
+                column.putInt(ids[i]);
+            }
+            int runCount = 0;
+            int minEpochDay = Integer.MAX_VALUE;
+            int maxEpochDay = Integer.MIN_VALUE;
+            for (int runStart = 0; runStart < rows; ) {
+                int epochDay = epochDays[runStart];
+                int runEnd = runStart + 1;
+                while (runEnd < rows && epochDays[runEnd] == epochDay)
+                    runEnd++;
+                column.putInt(epochDay);
+                column.putInt(runEnd - runStart);
+                runCount++;
+                minEpochDay = Math.min(minEpochDay, epochDay);
+                maxEpochDay = Math.max(maxEpochDay, epochDay);
+                runStart = runEnd;
+            }
+            out.write(column.array(), 0, column.position());
+
+            Block block = new Block(position, rows, runCount, minEpochDay, maxEpochDay);
+            blocks.add(block);
+            position += block.size();
+            rowCount += rows;
+            rows = 0;
+        }
+
+        void finish() throws IOException {
+            try {
+                writeBlock();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // Readers map the offsets as one buffer and address it by id * 4 in an int
+            if (dictionary.size() > MAX_COOKIES)
+                throw new IOException("Too many distinct cookies for a columnar log: " + dictionary.size());
+            long dictionaryOffset = position;
+            // The cookies come from one byte array in the dictionary, so their total fits an int
+            int cookieBytes = 0;
+            out.writeInt(0);
+            for (int id = 0; id < dictionary.size(); id++) {
+                cookieBytes += dictionary.cookieLength(id);
+                out.writeInt(cookieBytes);
+            }
+            for (int id = 0; id < dictionary.size(); id++) {
+                dictionary.writeCookie(id, out);
+            }
+            position += (long) (dictionary.size() + 1) * Integer.BYTES + cookieBytes;
+
+            long directoryOffset = position;
+            out.writeInt(blocks.size());
+            for (Block block : blocks) {
+                out.writeLong(block.offset());
+                out.writeInt(block.rowCount());
+                out.writeInt(block.runCount());
+                out.writeInt(block.minEpochDay());
+                out.writeInt(block.maxEpochDay());
+            }
+
+            out.writeLong(rowCount);
+            out.writeInt(dictionary.size());
+            out.writeLong(dictionaryOffset);
+            out.writeLong(directoryOffset);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.parser.cookie;
+
+import java.nio.file.Path;
+
+/**
+ * @param logPath the CSV log to convert, plain or compressed
+ * @param output where the columnar log is written; it is read like any other log afterwards
+ */
+public record ConversionOptions(Path logPath, Path output) {
+}
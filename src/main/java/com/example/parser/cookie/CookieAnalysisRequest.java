@@ -1,5 +1,96 @@
 package com.example.parser.cookie;
 
-public record CookieAnalysisRequest(String filePath, String dateStr) {
+import java.time.ZoneId;
+import java.util.List;
+import lombok.Builder;
+import lombok.Singular;
 
+/**
+ * @param filePaths the logs to analyse: files, directories or glob patterns. Several logs are
+ *                  scanned concurrently and their counts merged, skipping those that cannot hold
+ *                  any of the dates
+ * @param dates the dates (yyyy-MM-dd) to find the most active cookies for; all of them are
+ *              counted in a single pass over the log
+ * @param sorted whether the log is known to be sorted by timestamp, which lets the analyzer
+ *               seek straight to the target dates instead of scanning the whole file
+ * @param parser the parser engine used to scan the log; defaults to {@link LogParserType#STRING}
+ * @param threads number of threads scanning newline-aligned chunks of a single log in parallel, or
+ *                the most logs scanned at once when there are several; 0, the default, scans a
+ *                single log in one piece and up to one log per processor at once
+ * @param index how the per-day index next to the log is used; defaults to {@link IndexMode#IGNORE}
+ * @param top when positive, report the {@code top} cookies by count instead of the most active tie set
+ * @param counts whether the hit counts are reported alongside the cookies
+ * @param followSeconds when positive, keep following the growing log and report changes at this
+ *                      interval; without dates, today's date is followed
+ * @param stats whether a {@link ScanStats} report of what was read and skipped, and where the time
+ *              went, follows the answer
+ * @param approximate when positive, find the most active cookies in a {@link HeavyHitterSketch} of
+ *                    this many counters instead of counting every cookie, so memory stays bounded
+ *                    however many distinct cookies a day has; the counts reported are estimates
+ * @param verify with {@code approximate}, count the cookies the sketch holds exactly in a second pass
+ * @param spillAfter when positive, the most distinct cookies a count table holds in memory before it
+ *                   is spilled to temporary files, which keeps exact counting within a fixed heap
+ * @param zone when set, the dates (and windows) are days on this zone's wall clock and every row is
+ *             placed by its full timestamp, offset included, rather than by the date written in it
+ * @param bucketMinutes when positive, count each date in windows of this many minutes, which must
+ *                      divide a day; see {@link MostActiveCookieAnalyzer#getCookieCountsByWindow}
+ * @param pipeline when positive, scan a plain log through a {@link LogPipeline} of one reading stage,
+ *                 this many parsing stages and one counting stage, instead of {@code parser} and
+ *                 {@code threads}
+ * @param includes when not empty, only cookies matching one of these are counted: a cookie id, or a
+ *                 prefix followed by {@code *}
+ * @param excludes cookies matching one of these, in the same form, are not counted, e.g. known bots
+ * @param groupBy when set, cookies are counted and reported by group instead: {@code prefix:<n>} for
+ *                their first {@code n} bytes or {@code segment:<c>} for what comes before the first
+ *                {@code c}; see {@link CookieSelection}
+ * @throws IllegalArgumentException when {@code groupBy} is set in neither form
+ */
+@Builder(toBuilder = true)
+public record CookieAnalysisRequest(@Singular List<String> filePaths, @Singular List<String> dates, boolean sorted,
+        LogParserType parser, int threads, IndexMode index, int top,
+        boolean counts, int followSeconds, boolean stats, int approximate, boolean verify,
+        int spillAfter, ZoneId zone, int bucketMinutes, int pipeline, @Singular List<String> includes,
+        @Singular List<String> excludes, String groupBy) {
+
+    public CookieAnalysisRequest {
+        filePaths = filePaths == null ? List.of() : List.copyOf(filePaths);
+        dates = dates == null ? List.of() : List.copyOf(dates);
+        includes = includes == null ? List.of() : List.copyOf(includes);
+        excludes = excludes == null ? List.of() : List.copyOf(excludes);
+        if (parser == null) {
+            parser = LogParserType.STRING;
+        }
+        if (threads < 0) {
+            threads = 0;
+        }
+        if (index == null) {
+            index = IndexMode.IGNORE;
+        }
+        if (top < 0) {
+            top = 0;
+        }
+        if (followSeconds < 0) {
+            followSeconds = 0;
+        }
+        if (approximate < 0) {
+            approximate = 0;
+        }
+        if (spillAfter < 0) {
+            spillAfter = 0;
+        }
+        if (bucketMinutes < 0) {
+            bucketMinutes = 0;
+        }
+        if (pipeline < 0) {
+            pipeline = 0;
+        }
+        if (groupBy != null) {
+            CookieSelection.parseGroupBy(groupBy);
+        }
+    }
+
+    public CookieAnalysisRequest(String filePath, String dateStr) {
+        this(List.of(filePath), List.of(dateStr), false, null, 0, null, 0, false, 0, false, 0, false, 0, null, 0, 0,
+                null, null, null);
+    }
 }
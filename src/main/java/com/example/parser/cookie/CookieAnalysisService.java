@@ -0,0 +1,196 @@
+package com.example.parser.cookie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs analyses for callers embedding the analyzer, so that a batch of requests is answered
+ * concurrently and each caller waits only for its own result.
+ * <p>
+ * Requests of a batch that read the same logs the same way share one scan: every date any of them
+ * asks for is counted in a single pass and each request is ranked from those counts. Approximate,
+ * spilling and follow requests are never shared, as their counts are not full count tables, nor
+ * are requests counting time windows.
+ * <p>
+ * Cancelling every future of an analysis interrupts its scan, which stops at the next read of the
+ * log. Thread-safe.
+ */
+@Slf4j
+public class CookieAnalysisService implements Closeable {
+
+    private final MostActiveCookieAnalyzer analyzer;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * Runs at most {@code threads} analyses at once on threads of its own, shut down by {@link #close()}.
+     */
+    public CookieAnalysisService(int threads) {
+        this(new MostActiveCookieAnalyzer(), Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "cookie-analysis");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Runs analyses on {@code executor}, which stays the caller's to shut down: a bounded pool to cap
+     * the scans running at once, or a virtual-thread-per-task executor where the runtime has one.
+     */
+    public CookieAnalysisService(MostActiveCookieAnalyzer analyzer, ExecutorService executor) {
+        this(analyzer, executor, false);
+    }
+
+    private CookieAnalysisService(MostActiveCookieAnalyzer analyzer, ExecutorService executor, boolean ownsExecutor) {
+        this.analyzer = analyzer;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * @return the result {@link MostActiveCookieAnalyzer#getCookieCountsByDate(CookieAnalysisRequest)}
+     *         would return, once the analysis ran
+     */
+    public CompletableFuture<Map<LocalDate, List<CookieCount>>> analyze(CookieAnalysisRequest request) {
+        return analyzeAll(List.of(request)).get(0);
+    }
+
+    /**
+     * Starts every analysis of the batch, sharing the scans of requests over the same logs.
+     *
+     * @return one future per request, in request order; a request that cannot be analysed, such as
+     *         one following its log, gets a future failed with the reason
+     */
+    public List<CompletableFuture<Map<LocalDate, List<CookieCount>>>> analyzeAll(
+            List<CookieAnalysisRequest> requests) {
+        List<CompletableFuture<Map<LocalDate, List<CookieCount>>>> futures = new ArrayList<>(requests.size());
+        Map<ScanKey, List<Integer>> shareable = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CookieAnalysisRequest request = requests.get(i);
+            futures.add(new CompletableFuture<>());
+            try {
+                if (request.followSeconds() > 0)
+                    throw new IllegalArgumentException("Following a log has no single result to complete");
+                if (request.bucketMinutes() > 0)
+                    throw new IllegalArgumentException("A bucketed request is answered per window, not per date");
+                TargetDates.of(request.dates());
+            } catch (RuntimeException e) {
+                futures.get(i).completeExceptionally(e);
+                continue;
+            }
+            if (request.approximate() == 0 && request.spillAfter() == 0 && request.zone() == null
+                    && request.bucketMinutes() == 0) {
+                shareable.computeIfAbsent(ScanKey.of(request), key -> new ArrayList<>()).add(i);
+            } else {
+                analyzeAlone(request, futures.get(i));
+            }
+        }
+
+        shareable.values().forEach(members -> {
+            if (members.size() == 1) {
+                analyzeAlone(requests.get(members.get(0)), futures.get(members.get(0)));
+            } else {
+                analyzeShared(members.stream().map(requests::get).toList(),
+                        members.stream().map(futures::get).toList());
+            }
+        });
+        return futures;
+    }
+
+    /**
+     * Shuts down the threads the service started, letting the analyses already started finish.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private void analyzeAlone(CookieAnalysisRequest request,
+            CompletableFuture<Map<LocalDate, List<CookieCount>>> future) {
+        run(List.of(future), () -> future.complete(analyzer.getCookieCountsByDate(request)));
+    }
+
+    /**
+     * Counts the dates of every member in one pass and ranks each member from those counts.
+     */
+    private void analyzeShared(List<CookieAnalysisRequest> members,
+            List<CompletableFuture<Map<LocalDate, List<CookieCount>>>> futures) {
+        TreeSet<String> dates = new TreeSet<>();
+        for (CookieAnalysisRequest member : members) {
+            for (String date : member.dates()) {
+                dates.add(LocalDate.parse(date).toString());
+            }
+        }
+        CookieAnalysisRequest union = members.get(0).toBuilder().clearDates().dates(dates).build();
+        run(futures, () -> {
+            Map<LocalDate, CookieCountTable> countsByDate = analyzer.countAll(union);
+            log.debug("Shared one scan of {} between {} analyses", union.filePaths(), members.size());
+            for (int i = 0; i < members.size(); i++) {
+                TargetDates memberDates = TargetDates.of(members.get(i).dates());
+                Map<LocalDate, List<CookieCount>> ranked = new LinkedHashMap<>();
+                for (int d = 0; d < memberDates.size(); d++) {
+                    LocalDate date = memberDates.get(d);
+                    ranked.put(date, CookieRanking.rank(countsByDate.get(date), members.get(i).top()));
+                }
+                futures.get(i).complete(ranked);
+            }
+        });
+    }
+
+    /**
+     * Runs {@code task} on the executor, failing {@code futures} with whatever it throws and
+     * interrupting it once every one of them is cancelled.
+     */
+    private void run(List<CompletableFuture<Map<LocalDate, List<CookieCount>>>> futures, Analysis task) {
+        AtomicReference<Future<?>> running = new AtomicReference<>();
+        AtomicInteger live = new AtomicInteger(futures.size());
+        for (CompletableFuture<Map<LocalDate, List<CookieCount>>> future : futures) {
+            future.whenComplete((result, e) -> {
+                if (future.isCancelled() && live.decrementAndGet() == 0 && running.get() != null) {
+                    running.get().cancel(true);
+                }
+            });
+        }
+        running.set(executor.submit(() -> {
+            try {
+                task.run();
+            } catch (IOException | RuntimeException e) {
+                futures.forEach(future -> future.completeExceptionally(e));
+            }
+        }));
+        if (live.get() == 0) {
+            running.get().cancel(true);
+        }
+    }
+
+    private interface Analysis {
+        void run() throws IOException;
+    }
+
+    /**
+     * What decides the counts a request's scan produces, apart from its dates.
+     */
+    private record ScanKey(List<String> filePaths, boolean sorted, LogParserType parser, int threads,
+            IndexMode index, int pipeline, List<String> includes, List<String> excludes, String groupBy) {
+
+        static ScanKey of(CookieAnalysisRequest request) {
+            return new ScanKey(request.filePaths(), request.sorted(), request.parser(), request.threads(),
+                    request.index(), request.pipeline(), request.includes(), request.excludes(), request.groupBy());
+        }
+    }
+}
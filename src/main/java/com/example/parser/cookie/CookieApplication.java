@@ -1,9 +1,22 @@
 package com.example.parser.cookie;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import com.example.parser.utils.CliCommand;
 import com.example.parser.utils.CliParser;
+import com.example.parser.utils.HelpRequestedException;
 import lombok.extern.slf4j.Slf4j;
 
 
@@ -11,22 +24,42 @@ import lombok.extern.slf4j.Slf4j;
 @Component
 public class CookieApplication {
 
-    @Autowired
-    private CliParser cliParser;
+    private static final String STATS_PREFIX = "Stats: ";
+
+    private final CliParser cliParser;
+
+    private final MostActiveCookieAnalyzer mostActiveCookieAnalyzer;
 
     @Autowired
-    private MostActiveCookieAnalyzer mostActiveCookieAnalyzer;
+    public CookieApplication(CliParser cliParser, MostActiveCookieAnalyzer mostActiveCookieAnalyzer) {
+        this.cliParser = cliParser;
+        this.mostActiveCookieAnalyzer = mostActiveCookieAnalyzer;
+    }
 
     public List<String> run(String[] args) {
         try {
-            CookieAnalysisRequest cookieAnalysisRequest = cliParser.parse(args);
-
-            List<String> mostActiveCookies = mostActiveCookieAnalyzer.getMostActiveCookies(cookieAnalysisRequest);
+            CliCommand command = cliParser.parseCommand(args);
+            if (command instanceof CliCommand.Convert convert) {
+                convert(convert.options());
+                return List.of();
+            }
+            if (command instanceof CliCommand.Serve serve) {
+                serve(serve.options());
+                return List.of();
+            }
 
-            for (String cookie : mostActiveCookies) {
-                log.info("Most active cookie: {}", cookie);
+            CliCommand.Analyze analyze = (CliCommand.Analyze) command;
+            CookieAnalysisRequest cookieAnalysisRequest = analyze.request();
+            if (cookieAnalysisRequest.followSeconds() > 0) {
+                follow(cookieAnalysisRequest, line -> log.info("{}", line));
+                return List.of();
             }
-            return mostActiveCookies;
+            if (analyze.resultCache() != null) {
+                return answerCached(cookieAnalysisRequest, analyze.resultCache(), line -> log.info("{}", line));
+            }
+            return answer(cookieAnalysisRequest, line -> log.info("{}", line));
+        } catch (HelpRequestedException e) {
+            return List.of();
         } catch (IOException e) {
             log.error("Error reading the log file: {}", e.getMessage());
             throw new RuntimeException("Failed to process cookie data", e);
@@ -35,4 +68,208 @@ public class CookieApplication {
             throw new RuntimeException("Failed to process cookie data", e);
         }
     }
+
+    /**
+     * Rewrites a CSV log as a {@link ColumnarLog} and reports what was converted.
+     */
+    private void convert(ConversionOptions options) throws IOException {
+        ScanStats stats = new ScanStats();
+        long start = System.nanoTime();
+        ColumnarLog columnar;
+        try {
+            columnar = ColumnarLog.convert(options.logPath(), options.output(), stats);
+        } catch (IOException e) {
+            throw new IOException("Failed to convert the log file", e);
+        }
+        log.info("Converted {} rows of {} cookies into {} blocks in {} ({} bytes, {} ms); {} rows skipped",
+                columnar.rowCount(), columnar.cookieCount(), columnar.blockCount(), options.output(),
+                Files.size(options.output()), (System.nanoTime() - start) / 1_000_000,
+                stats.rowsScanned() - stats.rowsMatched());
+    }
+
+    /**
+     * Repeats the answer kept in the {@link ResultCache} for this request and these logs, without
+     * analysing anything, or answers the query and keeps the answer. A repeated answer ends with a
+     * line saying so, followed by a {@code Stats: } line showing nothing read when stats are asked for.
+     */
+    private List<String> answerCached(CookieAnalysisRequest cookieAnalysisRequest, ResultCacheOptions options,
+            Consumer<String> out) throws IOException {
+        ResultCache cache = new ResultCache(options.directory(), options.budgetBytes());
+        String key = ResultCache.keyOf(cookieAnalysisRequest);
+        Optional<ResultCache.Answer> cached = cache.get(key);
+        if (cached.isPresent()) {
+            cached.get().lines().forEach(out);
+            out.accept("Served from the result cache in " + options.directory());
+            if (cookieAnalysisRequest.stats()) {
+                out.accept(STATS_PREFIX + new ScanStats().toJson());
+            }
+            return cached.get().cookies();
+        }
+
+        List<String> lines = new ArrayList<>();
+        List<String> cookies = answer(cookieAnalysisRequest, line -> {
+            if (!line.startsWith(STATS_PREFIX)) {
+                lines.add(line);
+            }
+            out.accept(line);
+        });
+        cache.put(key, new ResultCache.Answer(lines, cookies));
+        return cookies;
+    }
+
+    /**
+     * Runs one query and hands each line of its report to {@code out}.
+     *
+     * @return the reported cookies, in report order
+     */
+    public List<String> answer(CookieAnalysisRequest cookieAnalysisRequest, Consumer<String> out) throws IOException {
+        if (cookieAnalysisRequest.bucketMinutes() > 0) {
+            return answerForWindows(cookieAnalysisRequest, out);
+        }
+        if (cookieAnalysisRequest.stats()) {
+            return answerWithStats(cookieAnalysisRequest, out);
+        }
+        if (cookieAnalysisRequest.top() > 0 || cookieAnalysisRequest.counts()) {
+            return answerWithCounts(cookieAnalysisRequest, out);
+        }
+        if (cookieAnalysisRequest.dates().size() > 1) {
+            return answerForDates(cookieAnalysisRequest, out);
+        }
+
+        List<String> mostActiveCookies = mostActiveCookieAnalyzer.getMostActiveCookies(cookieAnalysisRequest);
+
+        for (String cookie : mostActiveCookies) {
+            out.accept("Most active cookie: " + cookie);
+        }
+        return mostActiveCookies;
+    }
+
+    private List<String> answerForDates(CookieAnalysisRequest cookieAnalysisRequest, Consumer<String> out)
+            throws IOException {
+        Map<LocalDate, List<String>> mostActiveByDate =
+                mostActiveCookieAnalyzer.getMostActiveCookiesByDate(cookieAnalysisRequest);
+
+        List<String> mostActiveCookies = new ArrayList<>();
+        mostActiveByDate.forEach((date, cookies) -> {
+            for (String cookie : cookies) {
+                out.accept("Most active cookie on " + date + ": " + cookie);
+            }
+            mostActiveCookies.addAll(cookies);
+        });
+        return mostActiveCookies;
+    }
+
+    private List<String> answerWithCounts(CookieAnalysisRequest cookieAnalysisRequest, Consumer<String> out)
+            throws IOException {
+        return reportCounts(mostActiveCookieAnalyzer.getCookieCountsByDate(cookieAnalysisRequest),
+                cookieAnalysisRequest, out);
+    }
+
+    /**
+     * Reports the cookies of every time window, labelled with the window's wall-clock start, and the
+     * {@code Stats: } line when asked for.
+     */
+    private List<String> answerForWindows(CookieAnalysisRequest cookieAnalysisRequest, Consumer<String> out)
+            throws IOException {
+        ScanStats stats = new ScanStats();
+        Map<LocalDateTime, List<CookieCount>> countsByWindow =
+                mostActiveCookieAnalyzer.getCookieCountsByWindow(cookieAnalysisRequest, stats);
+
+        List<String> cookies;
+        if (cookieAnalysisRequest.top() > 0 || cookieAnalysisRequest.counts()) {
+            cookies = reportCounts(countsByWindow, cookieAnalysisRequest, out);
+        } else {
+            cookies = new ArrayList<>();
+            countsByWindow.forEach((start, counts) -> {
+                for (CookieCount count : counts) {
+                    out.accept("Most active cookie on " + start + ": " + count.cookie());
+                    cookies.add(count.cookie());
+                }
+            });
+        }
+        if (cookieAnalysisRequest.stats()) {
+            out.accept(STATS_PREFIX + stats.toJson());
+        }
+        return cookies;
+    }
+
+    /**
+     * Reports the same lines as the other answers, followed by a {@code Stats: } line holding the
+     * {@link ScanStats} of the analysis as JSON.
+     */
+    private List<String> answerWithStats(CookieAnalysisRequest cookieAnalysisRequest, Consumer<String> out)
+            throws IOException {
+        ScanStats stats = new ScanStats();
+        Map<LocalDate, List<CookieCount>> countsByDate =
+                mostActiveCookieAnalyzer.getCookieCountsByDate(cookieAnalysisRequest, stats);
+
+        List<String> cookies;
+        if (cookieAnalysisRequest.top() > 0 || cookieAnalysisRequest.counts()) {
+            cookies = reportCounts(countsByDate, cookieAnalysisRequest, out);
+        } else {
+            boolean withDate = cookieAnalysisRequest.dates().size() > 1;
+            cookies = new ArrayList<>();
+            countsByDate.forEach((date, counts) -> {
+                for (CookieCount count : counts) {
+                    out.accept("Most active cookie" + (withDate ? " on " + date : "") + ": " + count.cookie());
+                    cookies.add(count.cookie());
+                }
+            });
+        }
+        out.accept(STATS_PREFIX + stats.toJson());
+        return cookies;
+    }
+
+    /**
+     * Follows the log until interrupted, reporting the counts whenever they differ from the last report.
+     */
+    private void follow(CookieAnalysisRequest cookieAnalysisRequest, Consumer<String> out)
+            throws IOException, InterruptedException {
+        try (LogFollower follower = mostActiveCookieAnalyzer.follow(cookieAnalysisRequest)) {
+            Map<LocalDate, List<CookieCount>> reported = null;
+            while (!Thread.currentThread().isInterrupted()) {
+                Map<LocalDate, List<CookieCount>> countsByDate = follower.poll();
+                if (!countsByDate.equals(reported)) {
+                    reportCounts(countsByDate, cookieAnalysisRequest, out);
+                    reported = countsByDate;
+                }
+                Thread.sleep(cookieAnalysisRequest.followSeconds() * 1000L);
+            }
+        }
+    }
+
+    /**
+     * @param countsByKey the cookies of each date, or of each time window by its start
+     */
+    private <K> List<String> reportCounts(Map<K, List<CookieCount>> countsByKey,
+            CookieAnalysisRequest cookieAnalysisRequest, Consumer<String> out) {
+        String label = cookieAnalysisRequest.top() > 0 ? "Top cookie" : "Most active cookie";
+        List<String> cookies = new ArrayList<>();
+        countsByKey.forEach((key, counts) -> {
+            for (CookieCount count : counts) {
+                out.accept(label + " on " + key + ": " + count.cookie() + " (" + hits(count) + ")");
+                cookies.add(count.cookie());
+            }
+        });
+        return cookies;
+    }
+
+    private static String hits(CookieCount count) {
+        return count.error() > 0
+                ? count.count() + " hits, overestimated by up to " + count.error()
+                : count.count() + " hits";
+    }
+
+    private void serve(ServerOptions serverOptions) throws IOException, InterruptedException {
+        try (CookieServer server = new CookieServer(cliParser, serverOptions.cacheCookies())) {
+            server.warmUp();
+            if (serverOptions.port() > 0) {
+                log.info("Listening for queries on localhost:{}", server.start(serverOptions.port()));
+                server.join();
+            } else {
+                server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        new PrintWriter(System.out, true));
+            }
+        }
+    }
 }
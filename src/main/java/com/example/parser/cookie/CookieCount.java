@@ -0,0 +1,14 @@
+package com.example.parser.cookie;
+
+/**
+ * A cookie and the number of log rows it has on a date.
+ *
+ * @param error how much {@code count} may exceed the true count; 0 unless the count is an
+ *              estimate of the approximate mode
+ */
+public record CookieCount(String cookie, int count, int error) {
+
+    public CookieCount(String cookie, int count) {
+        this(cookie, count, 0);
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.parser.cookie;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Count table keyed by the UTF-8 bytes of a cookie. Each distinct cookie is interned once into a
+ * shared byte arena and gets a dense int id; counts live in a primitive {@code int[]} indexed by id
+ * and the id is found through an open-addressing (linear probing) hash table of ids.
+ * <p>
+ * Counting a cookie that is already known allocates nothing. The highest count and the cookies
+ * tied at it are maintained as counts grow, so {@link #mostActive()} needs no final scan.
+ * A distinct cookie costs roughly five to seven ints plus its key bytes, against a {@code String},
+ * a boxed {@code Integer} and a {@code HashMap.Node} in a {@code Map<String, Integer>}.
+ * <p>
+ * Not thread-safe; parallel scans count into one table per worker and {@link #addAll merge} them.
+ * A table holds at most 2<sup>29</sup> cookies and 2 GB of their bytes; counting a cookie beyond
+ * either throws an {@link IllegalStateException} and leaves the table as it was.
+ */
+final class CookieCountTable implements CookieCounter<CookieCountTable> {
+
+    private static final int INITIAL_CAPACITY = 64;
+    /** Largest array the JVM reliably allocates, bounding the key arena. */
+    private static final int MAX_KEY_BYTES = Integer.MAX_VALUE - 8;
+    private static final int MAX_SLOTS = 1 << 30;
+
+    /** Open-addressing slots holding {@code id + 1}; 0 marks an empty slot. Always at most half full. */
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];
+    private int[] counts = new int[INITIAL_CAPACITY / 2];
+    /** Key of id {@code i} is {@code keys[keyOffsets[i] .. keyOffsets[i + 1])}. */
+    private int[] keyOffsets = new int[INITIAL_CAPACITY / 2 + 1];
+    private byte[] keys = new byte[INITIAL_CAPACITY * 16];
+    private int size;
+
+    private int maxCount;
+    private int[] ties = new int[4];
+    private int tieCount;
+
+    /**
+     * Adds {@code delta} to the count of the cookie whose UTF-8 bytes are {@code key[offset .. offset + length)}.
+     *
+     * @return the id of the cookie
+     */
+    int add(byte[] key, int offset, int length, int delta) {
+        int hash = hash(key, offset, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        int id;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                id = insert(key, offset, length, hash, slot);
+                break;
+            }
+            if (hashes[entry - 1] == hash && keyEquals(entry - 1, key, offset, length)) {
+                id = entry - 1;
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        addCount(id, delta);
+        return id;
+    }
+
+    /**
+     * Adds {@code delta} to the count of the cookie with the given id. A zero delta, as when merging
+     * a table seeded with cookies it never counted, leaves the ties alone.
+     */
+    void addCount(int id, int delta) {
+        if (delta == 0)
+            return;
+        int count = counts[id] += delta;
+        if (count > maxCount) {
+            maxCount = count;
+            tieCount = 0;
+            addTie(id);
+        } else if (count == maxCount && count > 0) {
+            addTie(id);
+        }
+    }
+
+    int add(String cookie, int delta) {
+        byte[] key = cookie.getBytes(StandardCharsets.UTF_8);
+        return add(key, 0, key.length, delta);
+    }
+
+    @Override
+    public void increment(byte[] key, int offset, int length) {
+        add(key, offset, length, 1);
+    }
+
+    @Override
+    public void increment(byte[] key, int offset, int length, int count) {
+        add(key, offset, length, count);
+    }
+
+    /**
+     * @return the id of the cookie whose UTF-8 bytes are {@code key[offset .. offset + length)},
+     *         or -1 when it has not been counted
+     */
+    int find(byte[] key, int offset, int length) {
+        int hash = hash(key, offset, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && keyEquals(id, key, offset, length))
+                return id;
+        }
+        return -1;
+    }
+
+    @Override
+    public void addAll(CookieCountTable other) {
+        for (int id = 0; id < other.size; id++) {
+            int start = other.keyOffsets[id];
+            add(other.keys, start, other.keyOffsets[id + 1] - start, other.counts[id]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    int count(int id) {
+        return counts[id];
+    }
+
+    String cookie(int id) {
+        int start = keyOffsets[id];
+        return new String(keys, start, keyOffsets[id + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the {@link #hash} of the cookie with the given id
+     */
+    int cookieHash(int id) {
+        return hashes[id];
+    }
+
+    int cookieLength(int id) {
+        return keyOffsets[id + 1] - keyOffsets[id];
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the cookie with the given id, without decoding them.
+     */
+    void writeCookie(int id, DataOutput out) throws IOException {
+        out.write(keys, keyOffsets[id], cookieLength(id));
+    }
+
+    int maxCount() {
+        return maxCount;
+    }
+
+    /**
+     * @return every cookie tied at the highest count, in the order they reached it
+     */
+    List<CookieCount> mostActive() {
+        List<CookieCount> mostActive = new ArrayList<>(tieCount);
+        for (int i = 0; i < tieCount; i++) {
+            mostActive.add(new CookieCount(cookie(ties[i]), maxCount));
+        }
+        return mostActive;
+    }
+
+    private int insert(byte[] key, int offset, int length, int hash, int slot) {
+        int keyStart = keyOffsets[size];
+        long keyEnd = (long) keyStart + length;
+        if (keyEnd > MAX_KEY_BYTES)
+            throw new IllegalStateException("The cookies of one count table exceed " + MAX_KEY_BYTES + " bytes");
+        if ((size + 1) * 2 > slots.length && slots.length == MAX_SLOTS)
+            throw new IllegalStateException("Too many distinct cookies for one count table: " + size);
+
+        int id = size++;
+        if (id == counts.length) {
+            int capacity = counts.length * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity + 1);
+        }
+
+        if (keyEnd > keys.length) {
+            keys = Arrays.copyOf(keys, (int) Math.min(Math.max(keyEnd, keys.length * 2L), MAX_KEY_BYTES));
+        }
+        System.arraycopy(key, offset, keys, keyStart, length);
+        keyOffsets[id + 1] = (int) keyEnd;
+        hashes[id] = hash;
+
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = id + 1;
+        }
+        slots = rehashed;
+    }
+
+    private boolean keyEquals(int id, byte[] key, int offset, int length) {
+        int start = keyOffsets[id];
+        return keyOffsets[id + 1] - start == length
+                && Arrays.equals(keys, start, start + length, key, offset, offset + length);
+    }
+
+    private void addTie(int id) {
+        if (tieCount == ties.length) {
+            ties = Arrays.copyOf(ties, tieCount * 2);
+        }
+        ties[tieCount++] = id;
+    }
+
+    /** FNV-1a with a final avalanche step, so linear probing sees well spread low bits. */
+    static int hash(byte[] key, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ key[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
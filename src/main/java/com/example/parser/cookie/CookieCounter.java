@@ -0,0 +1,43 @@
+package com.example.parser.cookie;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Where the parsers count the rows of one date: an exact {@link CookieCountTable}, a bounded
+ * {@link HeavyHitterSketch} or a {@link CandidateCounter} restricted to known cookies.
+ * <p>
+ * Not thread-safe; parallel scans count into one counter per worker and {@link #addAll merge} them.
+ *
+ * @param <T> the concrete counter, so that counters of one kind can be merged
+ */
+interface CookieCounter<T extends CookieCounter<T>> {
+
+    /**
+     * Counts one row of the cookie whose UTF-8 bytes are {@code key[offset .. offset + length)}.
+     */
+    void increment(byte[] key, int offset, int length);
+
+    default void increment(String cookie) {
+        byte[] key = cookie.getBytes(StandardCharsets.UTF_8);
+        increment(key, 0, key.length);
+    }
+
+    /**
+     * Counts {@code count} rows of the cookie at once, for sources that hold counts rather than rows.
+     */
+    default void increment(byte[] key, int offset, int length, int count) {
+        for (int i = 0; i < count; i++) {
+            increment(key, offset, length);
+        }
+    }
+
+    /**
+     * Adds every count of {@code other} to this counter.
+     */
+    void addAll(T other);
+
+    /**
+     * @return the number of cookies held
+     */
+    int size();
+}
@@ -0,0 +1,38 @@
+package com.example.parser.cookie;
+
+import java.time.LocalDate;
+
+/**
+ * A single {@code cookie,timestamp} row of the log. {@link #parse(String)} applies the same
+ * leniency rules everywhere a row is read so every scan mode agrees on which rows count.
+ */
+record CookieLogLine(String cookie, String timestamp) {
+
+    private static final int DATE_LENGTH = 10;
+
+    /**
+     * @return the parsed row, or {@code null} when the line is blank or not a {@code cookie,timestamp} pair
+     */
+    static CookieLogLine parse(String rawLine) {
+        String line = rawLine.trim();
+        if (line.isEmpty())
+            return null;
+
+        String[] parts = line.split(",", 2);
+        if (parts.length != 2)
+            return null;
+
+        String timestamp = parts[1].trim();
+        if (timestamp.length() < DATE_LENGTH)
+            return null;
+
+        return new CookieLogLine(parts[0].trim(), timestamp);
+    }
+
+    /**
+     * @throws java.time.format.DateTimeParseException if the timestamp does not start with a valid date
+     */
+    LocalDate date() {
+        return LocalDate.parse(timestamp.substring(0, DATE_LENGTH));
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Scans a range of a cookie log, or a whole log read as a stream, and counts the rows that belong
+ * to the targets. Implementations must agree with {@link StringLogParser}, which is the
+ * reference for which rows count.
+ */
+interface CookieLogParser {
+
+    /**
+     * @param countsByDate one counter per target, addressed by {@link RowTargets} index
+     * @param stats        receives the row counters of the range; owned by the calling thread
+     */
+    void count(FileChannel channel, LogRange range, RowTargets targets,
+            List<? extends CookieCounter<?>> countsByDate, ScanStats stats) throws IOException;
+
+    /**
+     * Counts a log that can only be read sequentially, e.g. a compressed one.
+     *
+     * @param in the log from its first byte; the header line is skipped
+     */
+    void count(InputStream in, RowTargets targets, List<? extends CookieCounter<?>> countsByDate,
+            ScanStats stats) throws IOException;
+}
@@ -0,0 +1,89 @@
+package com.example.parser.cookie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Matches cookies against a list of patterns compiled once into byte-level structures: exact ids
+ * go into a hash table, and patterns ending in {@code *} into a trie of their prefixes, so
+ * matching a cookie costs one hash lookup and one walk down the trie however long the list is.
+ */
+final class CookieMatcher {
+
+    private final CookieCountTable ids = new CookieCountTable();
+    private final Node prefixes = new Node();
+    private boolean hasPrefixes;
+
+    /**
+     * @param patterns cookie ids, or prefixes followed by {@code *}; a lone {@code *} matches every cookie
+     */
+    CookieMatcher(Collection<String> patterns) {
+        for (String pattern : patterns) {
+            byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+            if (pattern.endsWith("*")) {
+                prefixes.insert(bytes, bytes.length - 1);
+                hasPrefixes = true;
+            } else {
+                ids.add(bytes, 0, bytes.length, 1);
+            }
+        }
+    }
+
+    boolean matches(byte[] key, int offset, int length) {
+        if (ids.size() > 0 && ids.find(key, offset, length) >= 0)
+            return true;
+        if (!hasPrefixes)
+            return false;
+        Node node = prefixes;
+        for (int i = 0; !node.terminal; i++) {
+            if (i == length)
+                return false;
+            node = node.child(key[offset + i]);
+            if (node == null)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * A trie node, its children kept in arrays sorted by their byte.
+     */
+    private static final class Node {
+
+        private byte[] labels = new byte[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        void insert(byte[] prefix, int length) {
+            Node node = this;
+            for (int i = 0; i < length; i++) {
+                int slot = Arrays.binarySearch(node.labels, prefix[i]);
+                if (slot < 0) {
+                    slot = -slot - 1;
+                    node.labels = insertAt(node.labels, slot, prefix[i]);
+                    Node[] children = new Node[node.children.length + 1];
+                    System.arraycopy(node.children, 0, children, 0, slot);
+                    System.arraycopy(node.children, slot, children, slot + 1, node.children.length - slot);
+                    children[slot] = new Node();
+                    node.children = children;
+                }
+                node = node.children[slot];
+            }
+            node.terminal = true;
+        }
+
+        Node child(byte label) {
+            int slot = Arrays.binarySearch(labels, label);
+            return slot < 0 ? null : children[slot];
+        }
+
+        private static byte[] insertAt(byte[] labels, int slot, byte label) {
+            byte[] inserted = new byte[labels.length + 1];
+            System.arraycopy(labels, 0, inserted, 0, slot);
+            inserted[slot] = label;
+            System.arraycopy(labels, slot, inserted, slot + 1, labels.length - slot);
+            return inserted;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.parser.cookie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Picks the leading cookies out of a count table without sorting the whole table.
+ */
+final class CookieRanking {
+
+    /** Highest count first, ties broken by cookie so the cut at K is deterministic. */
+    static final Comparator<CookieCount> BY_RANK = Comparator.comparingInt(CookieCount::count).reversed()
+            .thenComparing(CookieCount::cookie);
+
+    private CookieRanking() {
+    }
+
+    /**
+     * @return the {@link #top top} {@code top} cookies when {@code top} is positive, and the
+     *         {@link #mostActive most active} ones otherwise
+     */
+    static List<CookieCount> rank(CookieCountTable table, int top) {
+        return top > 0 ? top(table, top) : mostActive(table);
+    }
+
+    /**
+     * @return every cookie tied at the highest count
+     */
+    static List<CookieCount> mostActive(CookieCountTable table) {
+        return table.mostActive();
+    }
+
+    /**
+     * Selects the {@code k} highest counts with a bounded min-heap, in O(n log k) time and O(k) space.
+     * Cookies are only decoded when they enter the heap or tie with its weakest entry.
+     *
+     * @return at most {@code k} cookies ordered by {@link #BY_RANK}
+     */
+    static List<CookieCount> top(CookieCountTable table, int k) {
+        if (k <= 0)
+            return List.of();
+
+        PriorityQueue<CookieCount> heap = new PriorityQueue<>(k + 1, BY_RANK.reversed());
+        for (int id = 0; id < table.size(); id++) {
+            int count = table.count(id);
+            if (heap.size() == k) {
+                CookieCount weakest = heap.peek();
+                if (count < weakest.count())
+                    continue;
+                if (count == weakest.count()) {
+                    String cookie = table.cookie(id);
+                    if (cookie.compareTo(weakest.cookie()) > 0)
+                        continue;
+                    heap.poll();
+                    heap.add(new CookieCount(cookie, count));
+                    continue;
+                }
+                heap.poll();
+            }
+            heap.add(new CookieCount(table.cookie(id), count));
+        }
+
+        List<CookieCount> top = new ArrayList<>(heap);
+        top.sort(BY_RANK);
+        return top;
+    }
+}
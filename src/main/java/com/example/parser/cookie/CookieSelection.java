@@ -0,0 +1,174 @@
+package com.example.parser.cookie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Which cookies of a request are counted, and under what key. A cookie is counted when it matches
+ * one of the {@link CookieAnalysisRequest#includes() includes}, if any, and none of the
+ * {@link CookieAnalysisRequest#excludes() excludes}; it is then counted under its group, a
+ * leading part of its bytes picked by {@link CookieAnalysisRequest#groupBy()}:
+ * <ul>
+ * <li>{@code prefix:<n>}: its first {@code n} bytes, cut back to a whole UTF-8 character;</li>
+ * <li>{@code segment:<c>}: everything before the first {@code c}, or all of it without one.</li>
+ * </ul>
+ * The selection is applied in the scan, by {@link #wrap wrapping} the counters every engine counts
+ * into, so that excluded rows never reach a count table and groups are counted as single keys.
+ */
+final class CookieSelection {
+
+    /** Counts every cookie under its own id. */
+    static final CookieSelection ALL = new CookieSelection(null, null, 0, -1);
+
+    private static final Pattern GROUP_BY = Pattern.compile("prefix:([1-9][0-9]{0,8})|segment:(\\p{ASCII})");
+
+    private final CookieMatcher include;
+    private final CookieMatcher exclude;
+    private final int groupPrefix;
+    private final int groupSeparator;
+
+    private CookieSelection(CookieMatcher include, CookieMatcher exclude, int groupPrefix, int groupSeparator) {
+        this.include = include;
+        this.exclude = exclude;
+        this.groupPrefix = groupPrefix;
+        this.groupSeparator = groupSeparator;
+    }
+
+    /**
+     * @return whether {@code request} filters or groups its cookies
+     */
+    static boolean appliesTo(CookieAnalysisRequest request) {
+        return !request.includes().isEmpty() || !request.excludes().isEmpty() || request.groupBy() != null;
+    }
+
+    /**
+     * Reads a grouping as given to {@link CookieAnalysisRequest#groupBy()}, which checks it with this.
+     *
+     * @return the grouping matched: group 1 holds the prefix length, or else group 2 the separator
+     * @throws IllegalArgumentException when the grouping is neither {@code prefix:<n>} nor {@code segment:<c>}
+     */
+    static Matcher parseGroupBy(String groupBy) {
+        Matcher matcher = GROUP_BY.matcher(groupBy);
+        if (!matcher.matches())
+            throw new IllegalArgumentException(
+                    "Invalid grouping. Expected prefix:<bytes> or segment:<character>: " + groupBy);
+        return matcher;
+    }
+
+    /**
+     * Compiles the filters and grouping of {@code request}.
+     */
+    static CookieSelection of(CookieAnalysisRequest request) {
+        int groupPrefix = 0;
+        int groupSeparator = -1;
+        if (request.groupBy() != null) {
+            Matcher groupBy = parseGroupBy(request.groupBy());
+            if (groupBy.group(1) != null) {
+                groupPrefix = Integer.parseInt(groupBy.group(1));
+            } else {
+                groupSeparator = groupBy.group(2).charAt(0);
+            }
+        }
+        if (request.includes().isEmpty() && request.excludes().isEmpty() && groupPrefix == 0 && groupSeparator < 0)
+            return ALL;
+        return new CookieSelection(request.includes().isEmpty() ? null : new CookieMatcher(request.includes()),
+                request.excludes().isEmpty() ? null : new CookieMatcher(request.excludes()), groupPrefix,
+                groupSeparator);
+    }
+
+    /**
+     * @return the length of the key to count the cookie {@code key[offset .. offset + length)} under,
+     *         or -1 when it is filtered out
+     */
+    int select(byte[] key, int offset, int length) {
+        if (include != null && !include.matches(key, offset, length))
+            return -1;
+        if (exclude != null && exclude.matches(key, offset, length))
+            return -1;
+        if (groupPrefix > 0) {
+            int cut = Math.min(groupPrefix, length);
+            while (cut < length && cut > 0 && (key[offset + cut] & 0xC0) == 0x80)
+                cut--;
+            return cut;
+        }
+        if (groupSeparator >= 0) {
+            for (int i = 0; i < length; i++) {
+                if (key[offset + i] == groupSeparator)
+                    return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return the counts of the selected cookies of {@code counts}, each group summed; {@code counts}
+     *         itself when everything is selected
+     */
+    CookieCountTable select(CookieCountTable counts) {
+        if (this == ALL)
+            return counts;
+        CookieCountTable selected = new CookieCountTable();
+        for (int id = 0; id < counts.size(); id++) {
+            byte[] key = counts.cookie(id).getBytes(StandardCharsets.UTF_8);
+            int length = select(key, 0, key.length);
+            if (length >= 0) {
+                selected.add(key, 0, length, counts.count(id));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return views of {@code counters} that count only the selected cookies, each under its group,
+     *         for one scan; the counters themselves when everything is selected. Rows filtered out
+     *         are moved from the matched rows to {@link ScanStats.SkipReason#FILTERED} in {@code stats},
+     *         which must belong to the thread counting
+     */
+    <T extends CookieCounter<T>> List<? extends CookieCounter<?>> wrap(List<T> counters, ScanStats stats) {
+        if (this == ALL)
+            return counters;
+        return new LazyCounters<>(counters.size(), i -> new Selected<>(counters.get(i), stats));
+    }
+
+    /**
+     * A counter seen through the selection.
+     */
+    private final class Selected<T extends CookieCounter<T>> implements CookieCounter<Selected<T>> {
+
+        private final T counter;
+        private final ScanStats stats;
+
+        Selected(T counter, ScanStats stats) {
+            this.counter = counter;
+            this.stats = stats;
+        }
+
+        @Override
+        public void increment(byte[] key, int offset, int length) {
+            increment(key, offset, length, 1);
+        }
+
+        @Override
+        public void increment(byte[] key, int offset, int length, int count) {
+            int selected = select(key, offset, length);
+            if (selected < 0) {
+                stats.rowsMatched -= count;
+                stats.filteredRows += count;
+                return;
+            }
+            counter.increment(key, offset, selected, count);
+        }
+
+        @Override
+        public void addAll(Selected<T> other) {
+            counter.addAll(other.counter);
+        }
+
+        @Override
+        public int size() {
+            return counter.size();
+        }
+    }
+}
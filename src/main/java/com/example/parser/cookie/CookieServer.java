@@ -0,0 +1,202 @@
+package com.example.parser.cookie;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.example.parser.utils.CliParser;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers queries from a resident process, so that queries run on code the JIT has already
+ * compiled and repeat queries are served from a {@link CountTableCache} instead of the logs.
+ * <p>
+ * A query is one line holding the arguments of a CLI run, e.g. {@code -f cookie_log.csv -d 2018-12-09},
+ * with double quotes around arguments that contain spaces. The reply is the report of that run, one
+ * line per cookie, followed by an empty line; a failed query is answered with a single
+ * {@code ERROR <message>} line before the empty line. {@code quit} ends the session.
+ */
+@Slf4j
+public class CookieServer implements Closeable {
+
+    private static final String QUIT = "quit";
+    private static final int WARM_UP_ROWS = 100_000;
+    private static final int WARM_UP_ROUNDS = 5;
+
+    private final CliParser cliParser;
+    private final CookieApplication application;
+    private final ExecutorService sessions = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "cookie-server-session");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+
+    public CookieServer(CliParser cliParser, long cacheCookies) {
+        this.cliParser = cliParser;
+        this.application = new CookieApplication(cliParser,
+                new MostActiveCookieAnalyzer(new CountTableCache(cacheCookies)));
+    }
+
+    /**
+     * Answers the queries read from {@code in} until it ends or sends {@code quit}.
+     */
+    public void serve(BufferedReader in, PrintWriter out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String query = line.strip();
+            if (query.equals(QUIT))
+                break;
+            if (!query.isEmpty()) {
+                answer(query, out);
+            }
+        }
+    }
+
+    private void answer(String query, PrintWriter out) {
+        try {
+            List<String> args = tokenize(query);
+            if (args.contains("-h") || args.contains("--help"))
+                throw new IllegalArgumentException("Help is not available in server mode");
+            CookieAnalysisRequest request = cliParser.parse(args.toArray(String[]::new));
+            if (request.followSeconds() > 0)
+                throw new IllegalArgumentException("Follow mode is not available in server mode");
+            application.answer(request, out::println);
+        } catch (Exception e) {
+            out.println("ERROR " + describe(e));
+        }
+        out.println();
+        out.flush();
+    }
+
+    private static String describe(Exception e) {
+        Throwable cause = e.getCause();
+        return cause == null || cause.getMessage() == null
+                ? e.getMessage()
+                : e.getMessage() + ": " + cause.getMessage();
+    }
+
+    private static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inToken = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+        if (quoted)
+            throw new IllegalArgumentException("Unterminated quote in query: " + query);
+        if (inToken) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Accepts connections on the loopback interface, one session per connection.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @return the port listened on
+     */
+    public int start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::acceptAll, "cookie-server");
+        acceptor.start();
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Waits until the server is closed.
+     */
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    private void acceptAll() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.execute(() -> session(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Failed to accept a connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void session(Socket socket) {
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)))) {
+            serve(in, out);
+        } catch (IOException e) {
+            log.warn("Session ended: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs every parser engine over a generated log a few times so that the scanning code is
+     * compiled before the first real query arrives.
+     */
+    public void warmUp() throws IOException {
+        long start = System.nanoTime();
+        Path warmUpLog = Files.createTempFile("cookie-warm-up", ".csv");
+        try {
+            StringBuilder rows = new StringBuilder("cookie,timestamp\n");
+            for (int i = 0; i < WARM_UP_ROWS; i++) {
+                rows.append("warmUpCookie").append(i % 1_000).append(",2018-12-0").append(1 + i % 3)
+                        .append("T10:13:00+00:00\n");
+            }
+            Files.writeString(warmUpLog, rows);
+
+            MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+            for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+                for (LogParserType parser : LogParserType.values()) {
+                    analyzer.getCookieCountsByDate(CookieAnalysisRequest.builder().filePath(warmUpLog.toString())
+                            .date("2018-12-01").date("2018-12-02").parser(parser).top(10).build());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(warmUpLog);
+        }
+        log.info("Warmed up in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void close() throws IOException {
+        sessions.shutdownNow();
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+}
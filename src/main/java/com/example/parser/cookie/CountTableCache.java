@@ -0,0 +1,96 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of the full count table of a (log, date) pair, for analyzers that
+ * answer many queries over the same logs. Each table is stored with the size and modification
+ * time the log had when it was counted and is dropped once the log no longer matches them.
+ * <p>
+ * The cache is bounded by the number of distinct cookies across its tables, which is what their
+ * memory grows with. Cached tables are shared between callers and must not be modified.
+ */
+final class CountTableCache {
+
+    private final long maxCookies;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cookies;
+
+    CountTableCache(long maxCookies) {
+        this.maxCookies = maxCookies;
+    }
+
+    /**
+     * @return the cached table, or {@code null} when there is none for this version of the log
+     */
+    synchronized CookieCountTable get(Path logPath, LogVersion version, LocalDate date) {
+        Key key = new Key(logPath, date);
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (!entry.version().equals(version)) {
+            remove(key);
+            return null;
+        }
+        return entry.counts();
+    }
+
+    synchronized void put(Path logPath, LogVersion version, LocalDate date, CookieCountTable counts) {
+        Key key = new Key(logPath, date);
+        remove(key);
+        long weight = weight(counts);
+        if (weight > maxCookies)
+            return;
+
+        entries.put(key, new Entry(version, counts));
+        cookies += weight;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (cookies > maxCookies) {
+            cookies -= weight(eldest.next().counts());
+            eldest.remove();
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            cookies -= weight(removed.counts());
+        }
+    }
+
+    private static long weight(CookieCountTable counts) {
+        return Math.max(1, counts.size());
+    }
+
+    /**
+     * The size and modification time of a log, which change whenever it is rewritten or appended to.
+     */
+    record LogVersion(long size, long modifiedMillis) {
+
+        static LogVersion of(Path logPath) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(logPath, BasicFileAttributes.class);
+            return new LogVersion(attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    private record Key(Path logPath, LocalDate date) {
+
+        Key {
+            logPath = logPath.toAbsolutePath().normalize();
+        }
+    }
+
+    private record Entry(LogVersion version, CookieCountTable counts) {
+    }
+}
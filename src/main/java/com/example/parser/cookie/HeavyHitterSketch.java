@@ -0,0 +1,282 @@
+package com.example.parser.cookie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Space-Saving summary of the most active cookies in a fixed number of counters. A cookie that is
+ * not held takes over the counter with the lowest count and inherits that count as its possible
+ * overestimate. Hence every held count lies within its {@link CookieCount#error() error} above the
+ * true count, the error is at most rows / capacity, and every cookie whose true count exceeds the
+ * lowest held count is held.
+ * <p>
+ * Counters live in primitive arrays: a min-heap of counter indexes finds the lowest count and an
+ * open-addressing table of counter indexes, with backward-shift deletion, finds a cookie's counter.
+ * A counter's key array is reused while the cookies taking it over have the same length, so memory
+ * stays fixed by the capacity however many distinct cookies the log holds.
+ */
+final class HeavyHitterSketch implements CookieCounter<HeavyHitterSketch> {
+
+    /** Most counters a sketch holds, keeping its slot table within an array's size. */
+    static final int MAX_CAPACITY = 1 << 29;
+
+    private final int capacity;
+    private final byte[][] keys;
+    private final int[] hashes;
+    private final int[] counts;
+    private final int[] errors;
+    /** Counter indexes ordered as a binary min-heap on their counts. */
+    private final int[] heap;
+    /** Position of each counter in {@link #heap}. */
+    private final int[] heapPositions;
+    /** Open-addressing slots holding {@code counter + 1}; 0 marks an empty slot. At most half full. */
+    private final int[] slots;
+    private int size;
+
+    HeavyHitterSketch(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException(
+                    "A sketch needs between 1 and " + MAX_CAPACITY + " counters, not " + capacity);
+        this.capacity = capacity;
+        keys = new byte[capacity][];
+        hashes = new int[capacity];
+        counts = new int[capacity];
+        errors = new int[capacity];
+        heap = new int[capacity];
+        heapPositions = new int[capacity];
+        slots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    }
+
+    @Override
+    public void increment(byte[] key, int offset, int length) {
+        add(key, offset, length, 1, 0);
+    }
+
+    @Override
+    public void increment(byte[] key, int offset, int length, int count) {
+        add(key, offset, length, count, 0);
+    }
+
+    /**
+     * Merges {@code other} into this sketch: the counts of a cookie held by both are summed, a
+     * cookie held by only one is assumed to have up to the other's lowest count there, and the
+     * highest {@code capacity} sums are kept.
+     */
+    @Override
+    public void addAll(HeavyHitterSketch other) {
+        int floor = floor();
+        int otherFloor = other.floor();
+        byte[][] mergedKeys = new byte[size + other.size][];
+        int[] mergedCounts = new int[mergedKeys.length];
+        int[] mergedErrors = new int[mergedKeys.length];
+        int mergedSize = 0;
+        boolean[] merged = new boolean[other.size];
+        for (int counter = 0; counter < size; counter++) {
+            byte[] key = keys[counter];
+            int found = other.find(key, 0, key.length, hashes[counter]);
+            mergedKeys[mergedSize] = key;
+            if (found >= 0) {
+                merged[found] = true;
+                mergedCounts[mergedSize] = counts[counter] + other.counts[found];
+                mergedErrors[mergedSize] = errors[counter] + other.errors[found];
+            } else {
+                mergedCounts[mergedSize] = counts[counter] + otherFloor;
+                mergedErrors[mergedSize] = errors[counter] + otherFloor;
+            }
+            mergedSize++;
+        }
+        for (int counter = 0; counter < other.size; counter++) {
+            if (!merged[counter]) {
+                mergedKeys[mergedSize] = other.keys[counter];
+                mergedCounts[mergedSize] = other.counts[counter] + floor;
+                mergedErrors[mergedSize] = other.errors[counter] + floor;
+                mergedSize++;
+            }
+        }
+
+        // (-count, index) packed into longs: descending counts, ties in merge order
+        long[] order = new long[mergedSize];
+        for (int i = 0; i < mergedSize; i++) {
+            order[i] = ((long) -mergedCounts[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        Arrays.fill(slots, 0);
+        Arrays.fill(keys, null);
+        size = 0;
+        for (int i = 0; i < Math.min(capacity, mergedSize); i++) {
+            int index = (int) order[i];
+            byte[] key = mergedKeys[index];
+            add(key, 0, key.length, mergedCounts[index], mergedErrors[index]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the count a cookie that is not held may have at most: the lowest held count once
+     *         every counter is taken, 0 before
+     */
+    int floor() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /**
+     * @return every held cookie, in no particular order
+     */
+    List<String> cookies() {
+        List<String> cookies = new ArrayList<>(size);
+        for (int counter = 0; counter < size; counter++) {
+            cookies.add(cookie(counter));
+        }
+        return cookies;
+    }
+
+    /**
+     * @return at most {@code k} cookies with their estimated counts and errors, ordered by
+     *         {@link CookieRanking#BY_RANK}
+     */
+    List<CookieCount> top(int k) {
+        List<CookieCount> ranked = new ArrayList<>(size);
+        for (int counter = 0; counter < size; counter++) {
+            ranked.add(new CookieCount(cookie(counter), counts[counter], errors[counter]));
+        }
+        ranked.sort(CookieRanking.BY_RANK);
+        return ranked.subList(0, Math.min(k, ranked.size()));
+    }
+
+    /**
+     * @return every cookie tied at the highest estimated count, by cookie
+     */
+    List<CookieCount> mostActive() {
+        int maxCount = 0;
+        for (int counter = 0; counter < size; counter++) {
+            maxCount = Math.max(maxCount, counts[counter]);
+        }
+        List<CookieCount> mostActive = new ArrayList<>();
+        for (int counter = 0; counter < size; counter++) {
+            if (counts[counter] == maxCount) {
+                mostActive.add(new CookieCount(cookie(counter), maxCount, errors[counter]));
+            }
+        }
+        mostActive.sort(CookieRanking.BY_RANK);
+        return mostActive;
+    }
+
+    private String cookie(int counter) {
+        return new String(keys[counter], StandardCharsets.UTF_8);
+    }
+
+    private void add(byte[] key, int offset, int length, int count, int error) {
+        int hash = CookieCountTable.hash(key, offset, length);
+        int counter = find(key, offset, length, hash);
+        if (counter >= 0) {
+            counts[counter] += count;
+            errors[counter] += error;
+            siftDown(heapPositions[counter]);
+            return;
+        }
+
+        int floor = 0;
+        if (size < capacity) {
+            counter = size++;
+            heap[counter] = counter;
+            heapPositions[counter] = counter;
+        } else {
+            counter = heap[0];
+            floor = counts[counter];
+            removeSlot(counter);
+        }
+        if (keys[counter] == null || keys[counter].length != length) {
+            keys[counter] = new byte[length];
+        }
+        System.arraycopy(key, offset, keys[counter], 0, length);
+        hashes[counter] = hash;
+        counts[counter] = floor + count;
+        errors[counter] = floor + error;
+        insertSlot(counter);
+        siftDown(heapPositions[counter]);
+        siftUp(heapPositions[counter]);
+    }
+
+    /**
+     * @return the counter holding the cookie, or -1
+     */
+    private int find(byte[] key, int offset, int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int counter = slots[slot] - 1;
+            if (hashes[counter] == hash
+                    && Arrays.equals(keys[counter], 0, keys[counter].length, key, offset, offset + length))
+                return counter;
+        }
+        return -1;
+    }
+
+    private void insertSlot(int counter) {
+        int mask = slots.length - 1;
+        int slot = hashes[counter] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = counter + 1;
+    }
+
+    /**
+     * Removes the counter from the slots, shifting back the entries of its probe run that may no
+     * longer be reachable past the hole.
+     */
+    private void removeSlot(int counter) {
+        int mask = slots.length - 1;
+        int hole = hashes[counter] & mask;
+        while (slots[hole] != counter + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int home = hashes[slots[next] - 1] & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        slots[hole] = 0;
+    }
+
+    private void siftUp(int position) {
+        int counter = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[counter])
+                break;
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(counter, position);
+    }
+
+    private void siftDown(int position) {
+        int counter = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[counter])
+                break;
+            place(heap[child], position);
+            position = child;
+        }
+        place(counter, position);
+    }
+
+    private void place(int counter, int position) {
+        heap[position] = counter;
+        heapPositions[counter] = position;
+    }
+}
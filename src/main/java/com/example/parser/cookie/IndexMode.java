@@ -0,0 +1,16 @@
+package com.example.parser.cookie;
+
+/**
+ * How {@link MostActiveCookieAnalyzer} uses the per-day {@link LogIndex} kept next to a log.
+ */
+public enum IndexMode {
+
+    /** Always scan the log; the index is neither read nor written. */
+    IGNORE,
+
+    /** Answer from the index when it matches the log, otherwise fall back to scanning. */
+    USE,
+
+    /** Scan the whole log to (re)build the index, then answer from it. */
+    BUILD
+}
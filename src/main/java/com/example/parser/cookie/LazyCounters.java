@@ -0,0 +1,44 @@
+package com.example.parser.cookie;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * One counter per target, each created the first time it is asked for, so that the many windows of
+ * a long range cut into short buckets cost a reference each until a row falls into them.
+ */
+final class LazyCounters<T> extends AbstractList<T> {
+
+    private final Object[] counters;
+    private final IntFunction<T> newCounter;
+
+    LazyCounters(int size, IntFunction<T> newCounter) {
+        this.counters = new Object[size];
+        this.newCounter = newCounter;
+    }
+
+    /**
+     * @return whether the counter at {@code index} of {@code counters} exists without creating it;
+     *         always for lists that are not lazy
+     */
+    static boolean isCreated(List<?> counters, int index) {
+        return !(counters instanceof LazyCounters<?> lazy) || lazy.counters[index] != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Object counter = counters[index];
+        if (counter == null) {
+            counter = newCounter.apply(index);
+            counters[index] = counter;
+        }
+        return (T) counter;
+    }
+
+    @Override
+    public int size() {
+        return counters.length;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.parser.cookie;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compression formats a log can be stored in, detected from the file's magic bytes and, when
+ * the file is too short to tell, from its extension.
+ */
+enum LogCompression {
+
+    NONE,
+
+    GZIP,
+
+    /** Recognised so it can be reported clearly; there is no zstd codec on the classpath. */
+    ZSTD;
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    static LogCompression detect(Path path) throws IOException {
+        byte[] magic;
+        try (InputStream in = Files.newInputStream(path)) {
+            magic = in.readNBytes(4);
+        }
+        if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b)
+            return GZIP;
+        if (magic.length >= 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+                && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd)
+            return ZSTD;
+
+        String name = path.getFileName().toString();
+        if (magic.length < 4 && name.endsWith(".gz"))
+            return GZIP;
+        if (magic.length < 4 && name.endsWith(".zst"))
+            return ZSTD;
+        return NONE;
+    }
+
+    /**
+     * @return a stream of the decompressed log, starting with its header line
+     */
+    InputStream open(Path path) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(Files.newInputStream(path), STREAM_BUFFER_SIZE);
+            case ZSTD:
+                throw new IOException("zstd-compressed logs are not supported; decompress " + path + " first");
+            default:
+                return new BufferedInputStream(Files.newInputStream(path), STREAM_BUFFER_SIZE);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Expands the inputs of a request into the log files to read and drops the files that cannot
+ * hold rows for the target dates.
+ * <p>
+ * An input is a file, a directory (its regular files, not recursively) or a glob pattern such as
+ * {@code logs/2018-12-09/*.csv}. Index sidecars and hidden files found through a directory or a
+ * glob are left out.
+ */
+@Slf4j
+final class LogFiles {
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final Pattern NAME_DATE =
+            Pattern.compile("(?<!\\d)(\\d{4})-(\\d{2})-(\\d{2})(?!\\d)|(?<!\\d)(\\d{4})(\\d{2})(\\d{2})(?!\\d)");
+
+    private LogFiles() {
+    }
+
+    /**
+     * @return the distinct log files named by {@code inputs}, in input order. Plain file paths are
+     *         kept even when missing so that reading them reports the error.
+     */
+    static List<Path> resolve(List<String> inputs) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            List<Path> matched;
+            if (isGlob(input)) {
+                matched = expandGlob(input);
+            } else if (Files.isDirectory(Path.of(input))) {
+                matched = listDirectory(Path.of(input));
+            } else {
+                files.add(Path.of(input).normalize());
+                continue;
+            }
+            if (matched.isEmpty())
+                throw new IOException("No log files found for " + input);
+            files.addAll(matched);
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * @return the files {@code inputs} name directly, as {@link #resolve} lists them, rather than
+     *         through a directory or a glob
+     */
+    static Set<Path> named(List<String> inputs) {
+        Set<Path> named = new LinkedHashSet<>();
+        for (String input : inputs) {
+            if (!isGlob(input) && !Files.isDirectory(Path.of(input))) {
+                named.add(Path.of(input).normalize());
+            }
+        }
+        return named;
+    }
+
+    /**
+     * Drops the files that cannot contain any target date: columnar logs with no block spanning a
+     * target date, sorted uncompressed logs whose first and last rows bound a span holding no
+     * target date and, among the files found through a directory or a glob, those whose name
+     * carries a single date ({@code yyyy-MM-dd} or {@code yyyyMMdd}) that is not a target. A file
+     * named on its own is read whatever its name says.
+     *
+     * @param named the files named directly, see {@link #named}
+     */
+    static List<Path> relevantTo(List<Path> logPaths, Set<Path> named, TargetDates dates, boolean sorted)
+            throws IOException {
+        List<Path> relevant = new ArrayList<>(logPaths.size());
+        for (Path logPath : logPaths) {
+            LocalDate nameDate = named.contains(logPath) ? null : dateInName(logPath);
+            if (nameDate != null && dates.indexOf(nameDate) < 0) {
+                log.info("Skipping {}: named for {}", logPath, nameDate);
+                continue;
+            }
+            if (Files.exists(logPath) && ColumnarLog.isColumnar(logPath)) {
+                if (!ColumnarLog.open(logPath).mayContainAnyOf(dates)) {
+                    log.info("Skipping {}: no block of the columnar log spans the dates", logPath);
+                    continue;
+                }
+            } else if (sorted && !spanMayContain(logPath, dates)) {
+                log.info("Skipping {}: its first and last rows hold none of the dates", logPath);
+                continue;
+            }
+            relevant.add(logPath);
+        }
+        return relevant;
+    }
+
+    private static boolean spanMayContain(Path logPath, TargetDates dates) throws IOException {
+        if (LogCompression.detect(logPath) != LogCompression.NONE)
+            return true;
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            return new SortedLogSeeker(channel).mayContainAnyOf(dates);
+        }
+    }
+
+    /**
+     * @return the date spelled in the file name, or {@code null} when there is none or several
+     */
+    private static LocalDate dateInName(Path logPath) {
+        Matcher matcher = NAME_DATE.matcher(logPath.getFileName().toString());
+        LocalDate found = null;
+        while (matcher.find()) {
+            int group = matcher.group(1) != null ? 1 : 4;
+            LocalDate date;
+            try {
+                date = LocalDate.of(Integer.parseInt(matcher.group(group)),
+                        Integer.parseInt(matcher.group(group + 1)), Integer.parseInt(matcher.group(group + 2)));
+            } catch (DateTimeException e) {
+                continue;
+            }
+            if (found != null && !found.equals(date))
+                return null;
+            found = date;
+        }
+        return found;
+    }
+
+    private static boolean isGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(input.charAt(i)) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Walks the directory before the first glob character, only as deep as the pattern reaches
+     * unless it holds {@code **}.
+     */
+    private static List<Path> expandGlob(String pattern) throws IOException {
+        int firstGlob = 0;
+        while (GLOB_CHARACTERS.indexOf(pattern.charAt(firstGlob)) < 0)
+            firstGlob++;
+        int baseEnd = Math.max(pattern.lastIndexOf('/', firstGlob), pattern.lastIndexOf('\\', firstGlob));
+        boolean relative = baseEnd < 0;
+        Path base = relative ? Path.of(".") : Path.of(pattern.substring(0, baseEnd + 1));
+        String remainder = pattern.substring(baseEnd + 1);
+        int depth = remainder.contains("**") ? Integer.MAX_VALUE : remainder.split("[/\\\\]").length;
+        if (!Files.isDirectory(base))
+            return List.of();
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        try (Stream<Path> paths = Files.walk(base, depth)) {
+            return paths
+                    .map(path -> relative ? base.relativize(path) : path)
+                    .filter(matcher::matches)
+                    .filter(LogFiles::isLogFile)
+                    .map(Path::normalize)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static List<Path> listDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(LogFiles::isLogFile).map(Path::normalize).sorted().toList();
+        }
+    }
+
+    private static boolean isLogFile(Path path) {
+        String name = path.getFileName().toString();
+        return Files.isRegularFile(path) && !name.startsWith(".") && !name.endsWith(".idx");
+    }
+}
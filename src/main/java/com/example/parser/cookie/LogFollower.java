@@ -0,0 +1,220 @@
+package com.example.parser.cookie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the counts of a growing log up to date by reading only the bytes appended since the last
+ * {@link #poll()}. A trailing line without its newline is left for a later poll.
+ * <p>
+ * When the log is rotated (the path now names another file), whatever was appended to the old
+ * file is read to its end and the new file is read from its start. When it is truncated in place,
+ * noticed by its size dropping below the read position or by the bytes just before that position
+ * changing, it is read again from its start. Either way the counts so far are kept, so the file is
+ * never rescanned.
+ * <p>
+ * Without explicit dates the follower counts "today" in the clock's zone, along with tomorrow so
+ * that rows already written for it are not lost when the day rolls over.
+ */
+@Slf4j
+public final class LogFollower implements Closeable {
+
+    private static final int READ_SIZE = 1024 * 1024;
+    /** Bytes before the read position that are checked to still be there, to notice a rewrite. */
+    private static final int TAIL_SIZE = 64;
+
+    private final Path logPath;
+    private final int top;
+    private final Clock clock;
+    private final CookieSelection selection;
+    private final boolean today;
+
+    private TargetDates dates;
+    private List<CookieCountTable> countsByDate;
+    private ByteRowScanner scanner;
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    private boolean inHeader = true;
+    private final ByteBuffer tail = ByteBuffer.allocate(TAIL_SIZE);
+    private ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+
+    LogFollower(Path logPath, List<LocalDate> dates, int top, Clock clock, CookieSelection selection) {
+        tail.limit(0);
+        this.logPath = logPath;
+        this.top = top;
+        this.clock = clock;
+        this.selection = selection;
+        this.today = dates.isEmpty();
+        retarget(today ? todayAndTomorrow() : dates);
+    }
+
+    /**
+     * Reads what was appended since the last poll.
+     *
+     * @return per followed date, the cookies tied at the highest count or, with a top count, the
+     *         top cookies by count; only today's date when following today
+     */
+    public Map<LocalDate, List<CookieCount>> poll() throws IOException {
+        if (today && !dates.first().equals(LocalDate.now(clock))) {
+            retarget(todayAndTomorrow());
+        }
+        readAppended();
+
+        Map<LocalDate, List<CookieCount>> rankedByDate = new LinkedHashMap<>();
+        for (int i = 0; i < (today ? 1 : dates.size()); i++) {
+            CookieCountTable counts = countsByDate.get(i);
+            rankedByDate.put(dates.get(i), CookieRanking.rank(counts, top));
+        }
+        return rankedByDate;
+    }
+
+    private void readAppended() throws IOException {
+        Object currentKey;
+        try {
+            currentKey = Files.readAttributes(logPath, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            // between a rotation's rename and the creation of the new log
+            return;
+        }
+
+        if (channel != null && currentKey != null && !currentKey.equals(fileKey)) {
+            log.info("{} was rotated; reading the new file from its start", logPath);
+            readFrom(channel, true);
+            closeChannel();
+        }
+        if (channel == null) {
+            channel = FileChannel.open(logPath, StandardOpenOption.READ);
+            fileKey = currentKey;
+        }
+        if (channel.size() < position || !tailUnchanged()) {
+            log.info("{} was truncated; reading it from its start", logPath);
+            position = 0;
+            inHeader = true;
+        }
+        readFrom(channel, false);
+        rememberTail();
+    }
+
+    /**
+     * @return whether the bytes just before the read position are still those read, which fails
+     *         when the log was truncated and has since grown past the old position
+     */
+    private boolean tailUnchanged() throws IOException {
+        if (tail.limit() == 0)
+            return true;
+        ByteBuffer current = ByteBuffer.allocate(tail.limit());
+        channel.read(current, position - tail.limit());
+        return current.flip().equals(tail.rewind());
+    }
+
+    private void rememberTail() throws IOException {
+        tail.clear().limit((int) Math.min(TAIL_SIZE, position));
+        channel.read(tail, position - tail.limit());
+        tail.flip();
+    }
+
+    /**
+     * Scans {@code [position, size)} of the channel. Unless {@code toEnd} is set, a final line
+     * without a newline is not consumed.
+     */
+    private void readFrom(FileChannel source, boolean toEnd) throws IOException {
+        long size = source.size();
+        while (position < size) {
+            buffer.clear();
+            int read = source.read(buffer, position);
+            if (read <= 0)
+                break;
+            boolean endOfInput = toEnd && position + read == size;
+
+            int start = 0;
+            if (inHeader) {
+                int newline = indexOfNewline(buffer, read);
+                if (newline < 0 && !endOfInput) {
+                    if (!growForLongLine(read))
+                        return;
+                    continue;
+                }
+                inHeader = false;
+                start = newline < 0 ? read : newline + 1;
+            }
+
+            int consumed = scanner.scan(buffer, position, start, read, endOfInput);
+            if (consumed == 0 && !growForLongLine(read))
+                return;
+            position += consumed;
+        }
+    }
+
+    /**
+     * A line fills the whole buffer: grow it so the next read can hold the line, unless what was
+     * read is simply all there is for now.
+     *
+     * @return whether reading should continue
+     */
+    private boolean growForLongLine(int read) {
+        if (read < buffer.capacity())
+            return false;
+        buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        return true;
+    }
+
+    private static int indexOfNewline(ByteBuffer buffer, int to) {
+        for (int i = 0; i < to; i++) {
+            if (buffer.get(i) == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    private List<LocalDate> todayAndTomorrow() {
+        LocalDate now = LocalDate.now(clock);
+        return List.of(now, now.plusDays(1));
+    }
+
+    /**
+     * Switches to a new set of dates, keeping the tables of the dates that stay.
+     */
+    private void retarget(List<LocalDate> newDates) {
+        TargetDates next = new TargetDates(newDates);
+        List<CookieCountTable> nextCounts = new ArrayList<>(next.size());
+        for (int i = 0; i < next.size(); i++) {
+            int previous = dates == null ? -1 : dates.indexOf(next.get(i));
+            nextCounts.add(previous >= 0 ? countsByDate.get(previous) : new CookieCountTable());
+        }
+        dates = next;
+        countsByDate = nextCounts;
+        scanner = new ByteRowScanner(new TargetDateCounter(dates, selection.wrap(countsByDate, new ScanStats())));
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = null;
+        fileKey = null;
+        position = 0;
+        inHeader = true;
+        tail.clear().limit(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+    }
+}
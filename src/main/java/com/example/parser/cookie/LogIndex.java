@@ -0,0 +1,396 @@
+package com.example.parser.cookie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-day aggregate index stored next to a log as {@code <log>.idx}. For every date in the log it
+ * holds the count of every cookie seen that day, so queries are answered without reading the log. The index records the log's size and modification time
+ * and is ignored once either changes.
+ * <p>
+ * Layout (big-endian): a header {@code magic, version, logSize, logModifiedMillis}; one counts
+ * section per date of {@code (cookieLength, cookieUtf8, count)} entries sorted by descending
+ * count; a directory of {@code (epochDay, sectionOffset, cookieCount)} entries; and a footer holding the directory offset.
+ * <p>
+ * Building holds the counts of a few days at a time: while the log's dates keep running one way,
+ * ascending or descending, each day is spilled to a temporary file as soon as the next one starts, and otherwise every day is
+ * spilled once the days held reach {@value #MAX_BUFFERED_COOKIES} cookies. Each day is then read
+ * back on its own to write its section.
+ */
+@Slf4j
+final class LogIndex {
+
+    static final String SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x434B4958; // "CKIX"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    private static final int FOOTER_SIZE = 8;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BUFFERED_COOKIES = 1 << 20;
+
+    /**
+     * Where a date's counts live in the index.
+     */
+    record DateEntry(LocalDate date, long sectionOffset, int cookieCount) {
+    }
+
+    private final Path indexPath;
+    private final Map<LocalDate, DateEntry> entries;
+
+    private LogIndex(Path indexPath, Map<LocalDate, DateEntry> entries) {
+        this.indexPath = indexPath;
+        this.entries = entries;
+    }
+
+    static Path pathFor(Path logPath) {
+        return logPath.resolveSibling(logPath.getFileName() + SUFFIX);
+    }
+
+    /**
+     * @return the index of {@code logPath}, or empty when there is none or it no longer matches the log
+     */
+    static Optional<LogIndex> openIfFresh(Path logPath) throws IOException {
+        Path indexPath = pathFor(logPath);
+        if (!Files.isRegularFile(indexPath))
+            return Optional.empty();
+
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + FOOTER_SIZE)
+                return Optional.empty();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                return Optional.empty();
+            if (header.getLong() != Files.size(logPath)
+                    || header.getLong() != Files.getLastModifiedTime(logPath).toMillis())
+                return Optional.empty();
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            channel.read(footer, channel.size() - FOOTER_SIZE);
+            long directoryOffset = footer.flip().getLong();
+
+            DataInputStream in = open(channel, directoryOffset);
+            int dateCount = in.readInt();
+            Map<LocalDate, DateEntry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < dateCount; i++) {
+                DateEntry entry = new DateEntry(LocalDate.ofEpochDay(in.readLong()), in.readLong(), in.readInt());
+                entries.put(entry.date(), entry);
+            }
+            return Optional.of(new LogIndex(indexPath, entries));
+        }
+    }
+
+    /**
+     * Scans the whole log once and writes its index, replacing any previous one atomically.
+     *
+     * @return the index, or empty when it could not be written next to the log, e.g. in a
+     *         read-only directory
+     */
+    static Optional<LogIndex> build(Path logPath) throws IOException {
+        // captured before the scan, so a log appended to meanwhile leaves the index stale
+        long logSize = Files.size(logPath);
+        long logModified = Files.getLastModifiedTime(logPath).toMillis();
+
+        try (DayAggregator aggregator = new DayAggregator()) {
+            LogCompression compression = LogCompression.detect(logPath);
+            try {
+                if (compression == LogCompression.NONE) {
+                    try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                        MappedLogParser.scan(channel, LogRange.data(channel), new ByteRowScanner(aggregator));
+                    }
+                } else {
+                    try (InputStream in = compression.open(logPath)) {
+                        StreamLogScanner.scan(in, new ByteRowScanner(aggregator));
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            Path indexPath = pathFor(logPath);
+            Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            try {
+                Map<LocalDate, DateEntry> entries = write(tempPath, logSize, logModified, aggregator);
+                Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return Optional.of(new LogIndex(indexPath, entries));
+            } catch (IOException e) {
+                log.warn("Failed to write the index {}: {}", indexPath, e.getMessage());
+                try {
+                    Files.deleteIfExists(tempPath);
+                } catch (IOException cleanup) {
+                    log.debug("Failed to delete {}: {}", tempPath, cleanup.getMessage());
+                }
+                return Optional.empty();
+            }
+        }
+    }
+
+    private static Map<LocalDate, DateEntry> write(Path tempPath, long logSize, long logModified,
+            DayAggregator aggregator) throws IOException {
+        Map<LocalDate, DateEntry> entries = new LinkedHashMap<>();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempPath), IO_BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(logSize);
+            out.writeLong(logModified);
+            long position = HEADER_SIZE;
+
+            for (DayAggregate aggregate : aggregator.days()) {
+                CookieCountTable counts = aggregate.takeCounts();
+                entries.put(aggregate.date, new DateEntry(aggregate.date, position, counts.size()));
+
+                for (int id : idsByDescendingCount(counts)) {
+                    byte[] cookie = counts.cookie(id).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(cookie.length);
+                    out.write(cookie);
+                    out.writeInt(counts.count(id));
+                    position += 8 + cookie.length;
+                }
+            }
+
+            out.writeInt(entries.size());
+            for (DateEntry entry : entries.values()) {
+                out.writeLong(entry.date().toEpochDay());
+                out.writeLong(entry.sectionOffset());
+                out.writeInt(entry.cookieCount());
+            }
+            out.writeLong(position);
+        }
+        return entries;
+    }
+
+    /**
+     * Sorts ids on a packed {@code (count, id)} long array, avoiding boxed comparators.
+     */
+    private static int[] idsByDescendingCount(CookieCountTable counts) {
+        long[] packed = new long[counts.size()];
+        for (int id = 0; id < packed.length; id++) {
+            packed[id] = ((long) counts.count(id) << 32) | id;
+        }
+        Arrays.sort(packed);
+        int[] ids = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            ids[i] = (int) packed[packed.length - 1 - i];
+        }
+        return ids;
+    }
+
+    /**
+     * @return every cookie seen on {@code date} with its count; empty when the log has no rows for it
+     */
+    CookieCountTable counts(LocalDate date) throws IOException {
+        return leadingCounts(date, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads only the head of the date's section, which is sorted by descending count: the
+     * {@code k} highest counts plus any cookies tied with the k-th. Ranking these gives the same
+     * top {@code k} (or, for {@code k = 1}, the same tie set) as ranking the full table.
+     */
+    CookieCountTable leadingCounts(LocalDate date, int k) throws IOException {
+        CookieCountTable counts = new CookieCountTable();
+        DateEntry entry = entries.get(date);
+        if (entry == null)
+            return counts;
+
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            DataInputStream in = open(channel, entry.sectionOffset());
+            int kthCount = -1;
+            for (int i = 0; i < entry.cookieCount(); i++) {
+                byte[] cookie = in.readNBytes(in.readInt());
+                int count = in.readInt();
+                if (i >= k && count < kthCount)
+                    break;
+                if (i == k - 1)
+                    kthCount = count;
+                counts.add(cookie, 0, cookie.length, count);
+            }
+        }
+        return counts;
+    }
+
+    private static DataInputStream open(FileChannel channel, long position) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(position)),
+                IO_BUFFER_SIZE));
+    }
+
+    /**
+     * Collects the counts of every valid date in the log, spilling the counts of days
+     * to temporary files as described for the class. Consecutive rows usually share a date, so the
+     * last date looked up is cached.
+     */
+    private static final class DayAggregator implements ByteRowScanner.RowHandler, AutoCloseable {
+
+        private static final DayAggregate INVALID = new DayAggregate();
+
+        private final Map<Integer, DayAggregate> byKey = new HashMap<>();
+        private int lastKey = -1;
+        private DayAggregate last;
+        /** Whether the dates so far run one way, as given by {@link #direction} once two are seen. */
+        private boolean monotone = true;
+        /** 1 while the dates ascend, -1 while they descend, 0 before the second date. */
+        private int direction;
+        private int bufferedCookies;
+        private Path spillDirectory;
+
+        @Override
+        public void onRow(ByteRowScanner.Row row) {
+            int key = TargetDates.dateKey(row.buffer, row.timestampStart);
+            if (key < 0)
+                return;
+            if (key != lastKey) {
+                if (last != null && monotone) {
+                    int step = key > lastKey ? 1 : -1;
+                    if (direction == 0) {
+                        direction = step;
+                    }
+                    monotone = step == direction;
+                    if (monotone) {
+                        spill(last);
+                    }
+                }
+                lastKey = key;
+                last = byKey.computeIfAbsent(key, DayAggregator::newAggregate);
+            }
+            if (last == INVALID)
+                return;
+
+            int cookies = last.counts.size();
+            last.counts.add(row.cookieBytes(), 0, row.cookieLength(), 1);
+            if (last.counts.size() > cookies && ++bufferedCookies > MAX_BUFFERED_COOKIES) {
+                byKey.values().forEach(this::spill);
+            }
+        }
+
+        private static DayAggregate newAggregate(int key) {
+            try {
+                LocalDate date = LocalDate.of(key / 10_000, key / 100 % 100, key % 100);
+                DayAggregate aggregate = new DayAggregate();
+                aggregate.date = date;
+                return aggregate;
+            } catch (DateTimeException e) {
+                return INVALID;
+            }
+        }
+
+        /**
+         * Appends the day's counts to its spill file and empties them.
+         */
+        private void spill(DayAggregate aggregate) {
+            if (aggregate == INVALID || aggregate.counts.size() == 0)
+                return;
+            try {
+                if (spillDirectory == null) {
+                    spillDirectory = Files.createTempDirectory("cookie-index-");
+                }
+                if (aggregate.spillFile == null) {
+                    aggregate.spillFile = Files.createTempFile(spillDirectory, aggregate.date.toString(), ".spill");
+                }
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(aggregate.spillFile, StandardOpenOption.APPEND), IO_BUFFER_SIZE))) {
+                    CookieCountTable counts = aggregate.counts;
+                    for (int id = 0; id < counts.size(); id++) {
+                        out.writeInt(counts.cookieLength(id));
+                        counts.writeCookie(id, out);
+                        out.writeInt(counts.count(id));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to spill the counts of " + aggregate.date, e);
+            }
+            log.debug("Spilled {} cookies of {}", aggregate.counts.size(), aggregate.date);
+            bufferedCookies -= aggregate.counts.size();
+            aggregate.counts = new CookieCountTable();
+        }
+
+        /**
+         * @return the valid dates, in date order
+         */
+        Iterable<DayAggregate> days() {
+            Map<LocalDate, DayAggregate> days = new TreeMap<>();
+            for (DayAggregate aggregate : byKey.values()) {
+                if (aggregate != INVALID) {
+                    days.put(aggregate.date, aggregate);
+                }
+            }
+            return days.values();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (spillDirectory == null)
+                return;
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(spillDirectory);
+        }
+    }
+
+    private static final class DayAggregate {
+
+        LocalDate date;
+        CookieCountTable counts = new CookieCountTable();
+        Path spillFile;
+
+        /**
+         * @return all the day's counts, read back from its spill file if it has one; the day holds
+         *         none afterwards
+         */
+        CookieCountTable takeCounts() throws IOException {
+            CookieCountTable all = counts;
+            counts = null;
+            if (spillFile == null)
+                return all;
+
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(spillFile), IO_BUFFER_SIZE))) {
+                byte[] key = new byte[64];
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length > key.length) {
+                        key = new byte[Math.max(length, key.length * 2)];
+                    }
+                    in.readFully(key, 0, length);
+                    all.add(key, 0, length, in.readInt());
+                }
+            }
+            return all;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.parser.cookie;
+
+/**
+ * The parser engines available to {@link MostActiveCookieAnalyzer}.
+ */
+public enum LogParserType {
+
+    /** Line-by-line {@code String} parsing; the reference implementation. */
+    STRING(new StringLogParser()),
+
+    /** Byte-level parsing over memory-mapped windows of the file. */
+    MAPPED(new MappedLogParser());
+
+    private final CookieLogParser parser;
+
+    LogParserType(CookieLogParser parser) {
+        this.parser = parser;
+    }
+
+    CookieLogParser parser() {
+        return parser;
+    }
+}
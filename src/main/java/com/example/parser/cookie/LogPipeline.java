@@ -0,0 +1,292 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Counts a range of a log in three overlapping stages, so that reading, parsing and counting each
+ * run on their own thread and the scan goes as fast as the slowest of them rather than their sum:
+ * <ol>
+ * <li>a reader fills recycled heap buffers from the channel, each cut after its last complete
+ * line, the rest carried over to the start of the next buffer;</li>
+ * <li>one or more parsers split the buffers into rows with a {@link ByteRowScanner} and copy the
+ * cookie and target of every matching row into a batch of records, handing the buffer back as
+ * soon as it is parsed;</li>
+ * <li>the calling thread adds the records of each batch to the counters, which so are only ever
+ * touched by one thread.</li>
+ * </ol>
+ * Buffers and batches come from fixed pools, so a stage that falls behind stalls the stages
+ * feeding it instead of letting memory grow. The buffers are heap buffers, reclaimed with the
+ * pipeline: direct ones would hold native memory until collected, piling up over server runs. Rows are counted as the mapped parser counts them,
+ * though not in file order when there are several parsers.
+ */
+@Slf4j
+final class LogPipeline {
+
+    static final int BUFFER_SIZE = 1024 * 1024;
+    /** How long the counting stage waits for a batch before checking whether another stage failed. */
+    private static final long POLL_MILLIS = 100;
+    private static final Chunk END_OF_RANGE = new Chunk(null, 0);
+    private static final RecordBatch END_OF_RECORDS = new RecordBatch();
+
+    private final FileChannel channel;
+    private final LogRange range;
+    private final RowTargets targets;
+    private final int parsers;
+
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private final BlockingQueue<Chunk> filledBuffers;
+    private final BlockingQueue<RecordBatch> freeBatches;
+    private final BlockingQueue<RecordBatch> filledBatches;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private volatile long readerStallNanos;
+
+    /**
+     * Bytes of the file starting at {@code offset}, ending after a complete line or at the end of the range.
+     */
+    private record Chunk(ByteBuffer buffer, long offset) {
+    }
+
+    private LogPipeline(FileChannel channel, LogRange range, RowTargets targets, int parsers) {
+        this.channel = channel;
+        this.range = range;
+        this.targets = targets;
+        this.parsers = parsers;
+        int buffers = 2 * parsers + 1;
+        freeBuffers = new ArrayBlockingQueue<>(buffers);
+        filledBuffers = new ArrayBlockingQueue<>(buffers + parsers);
+        for (int i = 0; i < buffers; i++) {
+            freeBuffers.add(ByteBuffer.allocate(BUFFER_SIZE));
+        }
+        int batches = 2 * parsers;
+        freeBatches = new ArrayBlockingQueue<>(batches);
+        filledBatches = new ArrayBlockingQueue<>(batches + parsers);
+        for (int i = 0; i < batches; i++) {
+            freeBatches.add(new RecordBatch());
+        }
+    }
+
+    /**
+     * Counts the rows of {@code range} that belong to the targets, like {@link CookieLogParser#count}.
+     *
+     * @param parsers the number of parsing stages, at least 1
+     */
+    static void count(FileChannel channel, LogRange range, RowTargets targets,
+            List<? extends CookieCounter<?>> countsByDate, int parsers, ScanStats stats) throws IOException {
+        new LogPipeline(channel, range, targets, parsers).run(countsByDate, stats);
+    }
+
+    private void run(List<? extends CookieCounter<?>> countsByDate, ScanStats stats) throws IOException {
+        List<Thread> stages = new ArrayList<>(parsers + 1);
+        stages.add(new Thread(this::read, "log-pipeline-reader"));
+        for (int i = 0; i < parsers; i++) {
+            stages.add(new Thread(() -> parse(stats), "log-pipeline-parser-" + i));
+        }
+        for (Thread stage : stages) {
+            stage.setDaemon(true);
+            stage.start();
+        }
+
+        long stallNanos = 0;
+        try {
+            int parsersDone = 0;
+            while (parsersDone < parsers) {
+                long start = System.nanoTime();
+                RecordBatch batch = filledBatches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                stallNanos += System.nanoTime() - start;
+                throwIfFailed();
+                if (batch == null)
+                    continue;
+                if (batch == END_OF_RECORDS) {
+                    parsersDone++;
+                    continue;
+                }
+                batch.addTo(countsByDate);
+                freeBatches.put(batch);
+            }
+            throwIfFailed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while counting the log");
+        } finally {
+            stages.forEach(Thread::interrupt);
+        }
+        log.debug("Pipelined {} bytes through {} parsers; reading waited {} ms for buffers, counting {} ms for records",
+                range.end() - range.start(), parsers, readerStallNanos / 1_000_000, stallNanos / 1_000_000);
+    }
+
+    private void throwIfFailed() throws IOException {
+        Exception e = failure.get();
+        if (e instanceof IOException ioException)
+            throw ioException;
+        if (e instanceof UncheckedIOException uncheckedIOException)
+            throw uncheckedIOException.getCause();
+        if (e != null)
+            throw new IllegalStateException("Failed to count part of the log", e);
+    }
+
+    /**
+     * The reading stage: fills buffers with whole lines, in file order, then signals every parser.
+     */
+    private void read() {
+        long stallNanos = 0;
+        try {
+            long position = range.start();
+            long start = System.nanoTime();
+            ByteBuffer buffer = freeBuffers.take().clear();
+            stallNanos += System.nanoTime() - start;
+            long bufferOffset = position;
+            while (true) {
+                while (buffer.hasRemaining() && position < range.end()) {
+                    buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + range.end() - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0)
+                        throw new IOException("Log ended at offset " + position + " before " + range.end());
+                    position += read;
+                }
+                boolean endOfRange = position == range.end();
+                int length = buffer.position();
+                int cut = endOfRange ? length : lastNewline(buffer, length) + 1;
+                if (cut == 0 && !endOfRange)
+                    throw new IOException(
+                            "Log line at offset " + bufferOffset + " is longer than " + BUFFER_SIZE + " bytes");
+
+                ByteBuffer next = null;
+                if (!endOfRange) {
+                    start = System.nanoTime();
+                    next = freeBuffers.take().clear();
+                    stallNanos += System.nanoTime() - start;
+                    next.put(0, buffer, cut, length - cut).position(length - cut);
+                }
+                filledBuffers.put(new Chunk(buffer.limit(cut).position(0), bufferOffset));
+                if (endOfRange)
+                    break;
+                buffer = next;
+                bufferOffset += cut;
+            }
+        } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            return;
+        }
+        readerStallNanos = stallNanos;
+        for (int i = 0; i < parsers; i++) {
+            filledBuffers.add(END_OF_RANGE);
+        }
+    }
+
+    /**
+     * A parsing stage: turns buffers into batches of records until the reader is done.
+     */
+    private void parse(ScanStats stats) {
+        ScanStats parserStats = stats.forWorker();
+        RecordCollector collector = new RecordCollector(targets, parserStats);
+        ByteRowScanner scanner = new ByteRowScanner(collector, parserStats);
+        try {
+            while (true) {
+                Chunk chunk = filledBuffers.take();
+                if (chunk == END_OF_RANGE)
+                    break;
+                collector.batch = freeBatches.take().clear();
+                scanner.scan(chunk.buffer(), chunk.offset(), 0, chunk.buffer().limit(), true);
+                freeBuffers.put(chunk.buffer());
+                filledBatches.put(collector.batch);
+            }
+            stats.add(parserStats);
+            filledBatches.put(END_OF_RECORDS);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            // the pipeline is shutting down
+        }
+    }
+
+    private static int lastNewline(ByteBuffer buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the matching rows of a buffer into the current batch, accounting for the others like
+     * {@link TargetDateCounter}.
+     */
+    private static final class RecordCollector implements ByteRowScanner.RowHandler {
+
+        private final RowTargets targets;
+        private final ScanStats stats;
+        RecordBatch batch;
+
+        RecordCollector(RowTargets targets, ScanStats stats) {
+            this.targets = targets;
+            this.stats = stats;
+        }
+
+        @Override
+        public void onRow(ByteRowScanner.Row row) {
+            int index = targets.indexOf(row.buffer, row.timestampStart, row.timestampEnd);
+            if (index >= 0) {
+                batch.add(row, index);
+                stats.rowsMatched++;
+            } else if (index == RowTargets.INVALID) {
+                stats.invalidDate(row.timestamp());
+            } else {
+                stats.otherDateRows++;
+            }
+        }
+    }
+
+    /**
+     * {@code (cookie, target)} records of one buffer: the cookies back to back in one array, each
+     * record's end offset and target index in two more. Reused once counted.
+     */
+    private static final class RecordBatch {
+
+        private byte[] cookies = new byte[64 * 1024];
+        private int[] ends = new int[4096];
+        private int[] targets = new int[4096];
+        private int size;
+
+        RecordBatch clear() {
+            size = 0;
+            return this;
+        }
+
+        void add(ByteRowScanner.Row row, int target) {
+            int start = size == 0 ? 0 : ends[size - 1];
+            int length = row.cookieLength();
+            if (start + length > cookies.length) {
+                cookies = Arrays.copyOf(cookies, Math.max(start + length, cookies.length * 2));
+            }
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            row.buffer.get(row.cookieStart, cookies, start, length);
+            ends[size] = start + length;
+            targets[size] = target;
+            size++;
+        }
+
+        void addTo(List<? extends CookieCounter<?>> countsByDate) {
+            int start = 0;
+            for (int i = 0; i < size; i++) {
+                countsByDate.get(targets[i]).increment(cookies, start, ends[i] - start);
+                start = ends[i];
+            }
+        }
+    }
+}
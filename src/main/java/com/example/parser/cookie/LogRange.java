@@ -0,0 +1,84 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte range {@code [start, end)} of a log file. Ranges handed to a {@link CookieLogParser}
+ * always start at the beginning of a line and end just after a newline or at end of file.
+ */
+record LogRange(long start, long end) {
+
+    private static final int PROBE_SIZE = 256;
+
+    /**
+     * @return the range of the file holding data rows, i.e. everything after the CSV header line
+     */
+    static LogRange data(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return new LogRange(position + i + 1, size);
+            }
+            position += read;
+        }
+        return new LogRange(size, size);
+    }
+
+    /**
+     * Splits the range into at most {@code parts} consecutive ranges of roughly equal size, each
+     * boundary moved forward to the start of the next line so no row straddles two ranges.
+     */
+    List<LogRange> split(FileChannel channel, int parts) throws IOException {
+        List<LogRange> ranges = new ArrayList<>(parts);
+        long rangeStart = start;
+        for (int i = 1; i <= parts && rangeStart < end; i++) {
+            long rangeEnd = i == parts ? end : lineStartAtOrAfter(channel, start + length() * i / parts);
+            if (rangeEnd > rangeStart) {
+                ranges.add(new LogRange(rangeStart, rangeEnd));
+                rangeStart = rangeEnd;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * @return {@code position} if a line starts there, otherwise the offset after the next newline (capped at {@code end})
+     */
+    private long lineStartAtOrAfter(FileChannel channel, long position) throws IOException {
+        if (position <= start)
+            return start;
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+        long probe = position - 1;
+        while (probe < end) {
+            buffer.clear();
+            int read = channel.read(buffer, probe);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read && probe + i < end; i++) {
+                if (buffer.get(i) == '\n')
+                    return probe + i + 1;
+            }
+            probe += read;
+        }
+        return end;
+    }
+
+    long length() {
+        return end - start;
+    }
+
+    boolean isEmpty() {
+        return start >= end;
+    }
+}
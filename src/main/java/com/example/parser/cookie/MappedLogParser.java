@@ -0,0 +1,43 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Memory-maps the range in fixed-size windows and scans each window with a {@link ByteRowScanner}.
+ * A line cut by the end of a window is rescanned at the start of the next one. Streams, which
+ * cannot be mapped, go through the same scanner via {@link StreamLogScanner}.
+ */
+class MappedLogParser implements CookieLogParser {
+
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    @Override
+    public void count(FileChannel channel, LogRange range, RowTargets targets,
+            List<? extends CookieCounter<?>> countsByDate, ScanStats stats) throws IOException {
+        scan(channel, range, new ByteRowScanner(new TargetDateCounter(targets, countsByDate, stats), stats));
+    }
+
+    @Override
+    public void count(InputStream in, RowTargets targets, List<? extends CookieCounter<?>> countsByDate,
+            ScanStats stats) throws IOException {
+        StreamLogScanner.scan(in, new ByteRowScanner(new TargetDateCounter(targets, countsByDate, stats), stats));
+    }
+
+    static void scan(FileChannel channel, LogRange range, ByteRowScanner scanner) throws IOException {
+        long position = range.start();
+        while (position < range.end()) {
+            int windowSize = (int) Math.min(WINDOW_SIZE, range.end() - position);
+            boolean lastWindow = position + windowSize == range.end();
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+
+            int consumed = scanner.scan(window, position, 0, windowSize, lastWindow);
+            if (consumed == 0)
+                throw new IOException("Log line at offset " + position + " is longer than " + WINDOW_SIZE + " bytes");
+            position += consumed;
+        }
+    }
+}
@@ -1,67 +1,614 @@
 package com.example.parser.cookie;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.time.Clock;
 import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 @Slf4j
 @Service
 public class MostActiveCookieAnalyzer {
 
+    private final CountTableCache cache;
+    private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+
+    public MostActiveCookieAnalyzer() {
+        this(null);
+    }
+
+    /**
+     * @param cache keeps the full count tables of the logs counted, for an analyzer answering many
+     *              queries; {@code null} to count every query afresh
+     */
+    MostActiveCookieAnalyzer(CountTableCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Reports every analysis as a {@code cookie.analysis} observation carrying its {@link ScanStats},
+     * when the application context provides a registry.
+     */
+    @Autowired(required = false)
+    public void setObservationRegistry(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * @return the most active cookies of every requested date, in date order
+     */
     public List<String> getMostActiveCookies(CookieAnalysisRequest request) throws IOException {
-        LocalDate targetDate = LocalDate.parse(request.dateStr());
-        Map<String, Integer> cookieCountMap = new HashMap<>();
-        int maxCount = 0;
+        List<String> mostActiveCookies = new ArrayList<>();
+        getMostActiveCookiesByDate(request).values().forEach(mostActiveCookies::addAll);
+        return mostActiveCookies;
+    }
+
+    /**
+     * @return the cookies of {@link #getCookieCountsByDate(CookieAnalysisRequest)} without their counts
+     */
+    public Map<LocalDate, List<String>> getMostActiveCookiesByDate(CookieAnalysisRequest request) throws IOException {
+        Map<LocalDate, List<String>> mostActiveByDate = new LinkedHashMap<>();
+        getCookieCountsByDate(request).forEach((date, counts) ->
+                mostActiveByDate.put(date, counts.stream().map(CookieCount::cookie).toList()));
+        return mostActiveByDate;
+    }
 
-        List<String> lines;
+    /**
+     * Counts every requested date in a single pass over each log, or reads the counts from the
+     * log's index when the request allows it and the index is up to date. Several logs are counted
+     * concurrently into one set of tables.
+     *
+     * @return per requested date, in ascending date order, either the cookies tied at the highest
+     *         count or, when {@link CookieAnalysisRequest#top()} is set, the top cookies by count
+     */
+    public Map<LocalDate, List<CookieCount>> getCookieCountsByDate(CookieAnalysisRequest request) throws IOException {
+        return getCookieCountsByDate(request, new ScanStats());
+    }
+
+    /**
+     * Like {@link #getCookieCountsByDate(CookieAnalysisRequest)}, adding what the analysis read,
+     * skipped and spent its time on to {@code stats}.
+     *
+     * @throws IllegalArgumentException for a request counting windows shorter than a day
+     */
+    public Map<LocalDate, List<CookieCount>> getCookieCountsByDate(CookieAnalysisRequest request, ScanStats stats)
+            throws IOException {
+        if (request.bucketMinutes() > 0)
+            throw new IllegalArgumentException("A bucketed request is answered per window, not per date");
+        return observe(request, stats, () -> analyze(request, stats));
+    }
+
+    /**
+     * Counts every {@link CookieAnalysisRequest#bucketMinutes()} window of the requested dates in a
+     * single pass over each log, in the request's {@link CookieAnalysisRequest#zone() zone}. Windows
+     * are always counted from the logs, never from the index or a cache, and exactly.
+     *
+     * @return per window, by its wall-clock start in ascending order, either the cookies tied at the
+     *         highest count or, when {@link CookieAnalysisRequest#top()} is set, the top cookies by count;
+     *         windows no row fell into are left out, so that a long range of short windows costs
+     *         nothing for the windows without rows
+     */
+    public Map<LocalDateTime, List<CookieCount>> getCookieCountsByWindow(CookieAnalysisRequest request)
+            throws IOException {
+        return getCookieCountsByWindow(request, new ScanStats());
+    }
+
+    /**
+     * Like {@link #getCookieCountsByWindow(CookieAnalysisRequest)}, adding what the analysis read,
+     * skipped and spent its time on to {@code stats}.
+     */
+    public Map<LocalDateTime, List<CookieCount>> getCookieCountsByWindow(CookieAnalysisRequest request,
+            ScanStats stats) throws IOException {
+        return observe(request, stats, () -> analyzeWindows(request, stats));
+    }
+
+    /**
+     * Runs the analysis as a {@code cookie.analysis} observation carrying its stats.
+     */
+    private <R> R observe(CookieAnalysisRequest request, ScanStats stats, Analysis<R> analysis) throws IOException {
+        Observation observation = Observation.createNotStarted("cookie.analysis", observationRegistry)
+                .lowCardinalityKeyValue("parser", request.parser().name().toLowerCase(Locale.ROOT))
+                .lowCardinalityKeyValue("sorted", String.valueOf(request.sorted()))
+                .start();
         try {
-            lines = Files.readAllLines(Path.of(request.filePath()));
+            return analysis.run();
+        } catch (IOException | RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.highCardinalityKeyValue("bytes.read", String.valueOf(stats.bytesRead()))
+                    .highCardinalityKeyValue("rows.scanned", String.valueOf(stats.rowsScanned()))
+                    .highCardinalityKeyValue("rows.matched", String.valueOf(stats.rowsMatched()))
+                    .highCardinalityKeyValue("distinct.cookies", String.valueOf(stats.distinctCookies()));
+            for (ScanStats.SkipReason reason : ScanStats.SkipReason.values()) {
+                observation.highCardinalityKeyValue("rows.skipped." + reason.name().toLowerCase(Locale.ROOT),
+                        String.valueOf(stats.rowsSkipped(reason)));
+            }
+            observation.stop();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Analysis<R> {
+
+        R run() throws IOException;
+    }
+
+    private Map<LocalDate, List<CookieCount>> analyze(CookieAnalysisRequest request, ScanStats stats)
+            throws IOException {
+        if (request.zone() != null) {
+            Map<LocalDate, List<CookieCount>> countsByDate = new LinkedHashMap<>();
+            for (LocalDate date : TargetDates.of(request.dates()).all()) {
+                countsByDate.put(date, List.of());
+            }
+            analyzeWindows(request, stats).forEach((start, counts) -> countsByDate.put(start.toLocalDate(), counts));
+            return countsByDate;
+        }
+
+        TargetDates dates = TargetDates.of(request.dates());
+        try {
+            List<Path> logPaths = resolve(request, dates, stats);
+            if (request.approximate() > 0)
+                return countApproximately(logPaths, dates, request, stats);
+            if (request.spillAfter() > 0)
+                return countSpilling(logPaths, dates, request, stats);
+
+            int indexK = logPaths.size() == 1 ? Math.max(1, request.top()) : Integer.MAX_VALUE;
+            List<CookieCountTable> countsByDate = countExactly(logPaths, dates, request, indexK, stats);
+            return rank(dates.all(), countsByDate, counts -> CookieRanking.rank(counts, request.top()), stats);
         } catch (IOException e) {
             throw new IOException("Failed to read the log file", e);
+        } catch (UncheckedIOException e) {
+            throw new IOException("Failed to read the log file", e.getCause());
         }
+    }
+
+    /**
+     * Counts the request's {@link TimeWindows} into a full count table each, bypassing the cache and
+     * the index, which only know the dates written in the log.
+     */
+    private Map<LocalDateTime, List<CookieCount>> analyzeWindows(CookieAnalysisRequest request, ScanStats stats)
+            throws IOException {
+        if (request.approximate() > 0 || request.spillAfter() > 0)
+            throw new IllegalArgumentException("Time windows are counted exactly, without approximating or spilling");
+        TimeWindows windows = new TimeWindows(TargetDates.of(request.dates()), request.zone(), request.bucketMinutes());
+        if (request.index() != IndexMode.IGNORE) {
+            log.info("The index holds counts per written date; counting the time windows from the log");
+        }
+        try {
+            List<Path> logPaths = resolve(request, windows.writtenDates(), stats);
+            IntFunction<CookieCountTable> newCounter = i -> new CookieCountTable();
+            List<CookieCountTable> countsByWindow = countLogs(logPaths, windows, request, stats, newCounter,
+                    (logPath, logRequest, logStats) -> scan(logPath, windows, logRequest, logStats, newCounter));
 
-        for (int i = 1; i < lines.size(); i++) {
-            String line = lines.get(i).trim();
-            if (line.isEmpty())
-                continue;
+            // Only the windows some row fell into got a table; the rest have nothing to report
+            List<LocalDateTime> starts = new ArrayList<>();
+            List<CookieCountTable> counted = new ArrayList<>();
+            for (int i = 0; i < windows.size(); i++) {
+                if (LazyCounters.isCreated(countsByWindow, i)) {
+                    starts.add(windows.start(i));
+                    counted.add(countsByWindow.get(i));
+                }
+            }
+            return rank(starts, counted, counts -> CookieRanking.rank(counts, request.top()), stats);
+        } catch (IOException e) {
+            throw new IOException("Failed to read the log file", e);
+        } catch (UncheckedIOException e) {
+            throw new IOException("Failed to read the log file", e.getCause());
+        }
+    }
 
-            String[] parts = line.split(",", 2);
-            if (parts.length != 2)
-                continue;
+    /**
+     * Counts every date of the request in full, ignoring how many cookies it asks for, so that
+     * requests over the same logs can each be ranked from one set of tables. Like the cache, the
+     * tables returned must not be modified.
+     */
+    Map<LocalDate, CookieCountTable> countAll(CookieAnalysisRequest request) throws IOException {
+        TargetDates dates = TargetDates.of(request.dates());
+        List<CookieCountTable> countsByDate;
+        try {
+            ScanStats stats = new ScanStats();
+            countsByDate = countExactly(resolve(request, dates, stats), dates, request, Integer.MAX_VALUE, stats);
+        } catch (IOException e) {
+            throw new IOException("Failed to read the log file", e);
+        } catch (UncheckedIOException e) {
+            throw new IOException("Failed to read the log file", e.getCause());
+        }
+        Map<LocalDate, CookieCountTable> countsByLocalDate = new LinkedHashMap<>();
+        for (int i = 0; i < dates.size(); i++) {
+            countsByLocalDate.put(dates.get(i), countsByDate.get(i));
+        }
+        return countsByLocalDate;
+    }
 
-            String cookie = parts[0].trim();
-            String timestamp = parts[1].trim();
+    /**
+     * @return the logs of the request that may hold rows for the dates
+     */
+    private static List<Path> resolve(CookieAnalysisRequest request, TargetDates dates, ScanStats stats)
+            throws IOException {
+        long start = System.nanoTime();
+        List<Path> candidates = LogFiles.resolve(request.filePaths());
+        List<Path> logPaths = LogFiles.relevantTo(candidates, LogFiles.named(request.filePaths()), dates,
+                request.sorted());
+        stats.addLogs(logPaths.size(), candidates.size() - logPaths.size());
+        stats.addTime(ScanStats.Phase.RESOLVE, System.nanoTime() - start);
+        return logPaths;
+    }
 
-            if (timestamp.length() < 10)
-                continue;
+    private List<CookieCountTable> countExactly(List<Path> logPaths, TargetDates dates, CookieAnalysisRequest request,
+            int indexK, ScanStats stats) throws IOException {
+        return countLogs(logPaths, dates, request, stats, i -> new CookieCountTable(),
+                (logPath, logRequest, logStats) -> count(logPath, dates, logRequest, indexK, logStats));
+    }
 
-            try {
-                LocalDate logDate = LocalDate.parse(timestamp.substring(0, 10));
-                if (logDate.equals(targetDate)) {
-                    int count = cookieCountMap.getOrDefault(cookie, 0) + 1;
-                    cookieCountMap.put(cookie, count);
-                    maxCount = Math.max(maxCount, count);
+    /**
+     * Counts the logs exactly within {@link CookieAnalysisRequest#spillAfter()} cookies per counter,
+     * spilling to partition files in a temporary directory that is deleted once ranked. The cache
+     * and the index are not used.
+     */
+    private Map<LocalDate, List<CookieCount>> countSpilling(List<Path> logPaths, TargetDates dates,
+            CookieAnalysisRequest request, ScanStats stats) throws IOException {
+        Path spillDirectory = Files.createTempDirectory("cookie-spill");
+        try {
+            IntFunction<SpillingCounter> newCounter = i -> new SpillingCounter(request.spillAfter(), spillDirectory);
+            List<SpillingCounter> countsByDate = countLogs(logPaths, dates, request, stats, newCounter,
+                    (logPath, logRequest, logStats) -> scan(logPath, dates, logRequest, logStats, newCounter));
+            return rank(dates.all(), countsByDate,
+                    counts -> request.top() > 0 ? counts.top(request.top()) : counts.mostActive(), stats);
+        } finally {
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
                 }
-            } catch (DateTimeParseException e) {
-                log.warn("Malformed date in log file: {}", timestamp, e);
             }
+            Files.delete(spillDirectory);
         }
+    }
 
-        List<String> mostActiveCookies = new ArrayList<>();
-        for (Map.Entry<String, Integer> entry : cookieCountMap.entrySet()) {
-            if (entry.getValue() == maxCount) {
-                mostActiveCookies.add(entry.getKey());
+    /**
+     * Counts the logs into a {@link HeavyHitterSketch} per date, bypassing the cache and the index.
+     * With {@link CookieAnalysisRequest#verify()}, a second pass counts the cookies held by the
+     * sketches exactly and ranks those counts instead.
+     */
+    private Map<LocalDate, List<CookieCount>> countApproximately(List<Path> logPaths, TargetDates dates,
+            CookieAnalysisRequest request, ScanStats stats) throws IOException {
+        IntFunction<HeavyHitterSketch> newSketch = i -> new HeavyHitterSketch(request.approximate());
+        List<HeavyHitterSketch> sketches = countLogs(logPaths, dates, request, stats, newSketch,
+                (logPath, logRequest, logStats) -> scan(logPath, dates, logRequest, logStats, newSketch));
+        if (!request.verify())
+            return rank(dates.all(), sketches,
+                    sketch -> request.top() > 0 ? sketch.top(request.top()) : sketch.mostActive(), stats);
+
+        List<List<String>> candidates = sketches.stream().map(HeavyHitterSketch::cookies).toList();
+        IntFunction<CandidateCounter> newCandidates = i -> new CandidateCounter(candidates.get(i));
+        List<CandidateCounter> confirmed = countLogs(logPaths, dates, request, stats, newCandidates,
+                (logPath, logRequest, logStats) -> scan(logPath, dates, logRequest, logStats, newCandidates));
+        return rank(dates.all(), confirmed, counts -> CookieRanking.rank(counts.counts(), request.top()), stats);
+    }
+
+    /**
+     * Ranks the counter of every date or window, noting the distinct cookies counted and the time taken.
+     *
+     * @param keys the date or window of each counter, by index
+     */
+    private static <K, T extends CookieCounter<T>> Map<K, List<CookieCount>> rank(List<K> keys,
+            List<T> countsByKey, Ranking<T> ranking, ScanStats stats) throws IOException {
+        long start = System.nanoTime();
+        Map<K, List<CookieCount>> rankedByKey = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            rankedByKey.put(keys.get(i), ranking.rank(countsByKey.get(i)));
+            stats.addDistinctCookies(countsByKey.get(i).size());
+        }
+        stats.addTime(ScanStats.Phase.RANK, System.nanoTime() - start);
+        return rankedByKey;
+    }
+
+    /**
+     * Picks the reported cookies out of one date's counter for {@link #rank}.
+     */
+    @FunctionalInterface
+    private interface Ranking<T> {
+
+        List<CookieCount> rank(T counts) throws IOException;
+    }
+
+    /**
+     * Starts following a single growing log for {@link CookieAnalysisRequest#followSeconds() follow}
+     * mode. Nothing is read until the first {@link LogFollower#poll()}.
+     */
+    public LogFollower follow(CookieAnalysisRequest request) throws IOException {
+        List<Path> logPaths = LogFiles.resolve(request.filePaths());
+        if (logPaths.size() != 1)
+            throw new IllegalArgumentException("Follow mode reads a single log, not " + request.filePaths());
+        if (Files.exists(logPaths.get(0)) && LogCompression.detect(logPaths.get(0)) != LogCompression.NONE)
+            throw new IllegalArgumentException("Follow mode cannot read a compressed log: " + logPaths.get(0));
+        if (Files.exists(logPaths.get(0)) && ColumnarLog.isColumnar(logPaths.get(0)))
+            throw new IllegalArgumentException("Follow mode cannot read a columnar log: " + logPaths.get(0));
+
+        List<LocalDate> dates = request.dates().stream().map(LocalDate::parse).toList();
+        return new LogFollower(logPaths.get(0), dates, request.top(), Clock.systemUTC(),
+                CookieSelection.of(request));
+    }
+
+    /**
+     * Counts one log from its index when the request allows it, reading only the {@code indexK}
+     * leading counts of each date, and by scanning it otherwise. With a cache, only the dates it
+     * has no table for are counted, in full, and their tables are added to it. Requests selecting
+     * cookies bypass the cache, whose tables hold every cookie.
+     */
+    private List<CookieCountTable> count(Path logPath, TargetDates dates, CookieAnalysisRequest request, int indexK,
+            ScanStats stats) throws IOException {
+        if (cache == null || request.index() == IndexMode.BUILD || CookieSelection.appliesTo(request))
+            return countUncached(logPath, dates, request, indexK, stats);
+
+        CountTableCache.LogVersion version = CountTableCache.LogVersion.of(logPath);
+        List<CookieCountTable> countsByDate = new ArrayList<>(dates.size());
+        List<LocalDate> missing = new ArrayList<>();
+        for (int i = 0; i < dates.size(); i++) {
+            CookieCountTable counts = cache.get(logPath, version, dates.get(i));
+            countsByDate.add(counts);
+            if (counts == null) {
+                missing.add(dates.get(i));
             }
         }
+        if (missing.isEmpty())
+            return countsByDate;
 
-        return mostActiveCookies;
+        TargetDates missingDates = new TargetDates(missing);
+        List<CookieCountTable> counted = countUncached(logPath, missingDates, request, Integer.MAX_VALUE, stats);
+        for (int i = 0; i < missingDates.size(); i++) {
+            LocalDate date = missingDates.get(i);
+            cache.put(logPath, version, date, counted.get(i));
+            countsByDate.set(dates.indexOf(date), counted.get(i));
+        }
+        return countsByDate;
+    }
+
+    private List<CookieCountTable> countUncached(Path logPath, TargetDates dates, CookieAnalysisRequest request,
+            int indexK, ScanStats stats) throws IOException {
+        long start = System.nanoTime();
+        Optional<LogIndex> index = openIndex(logPath, request.index());
+        if (index.isEmpty()) {
+            stats.addTime(ScanStats.Phase.INDEX, System.nanoTime() - start);
+            return scan(logPath, dates, request, stats, i -> new CookieCountTable());
+        }
+        // the leading cookies need not make the leading groups, so selections read whole tables
+        CookieSelection selection = CookieSelection.of(request);
+        List<CookieCountTable> countsByDate = countsFromIndex(index.get(), dates,
+                selection == CookieSelection.ALL ? indexK : Integer.MAX_VALUE);
+        countsByDate.replaceAll(selection::select);
+        stats.addTime(ScanStats.Phase.INDEX, System.nanoTime() - start);
+        return countsByDate;
+    }
+
+    /**
+     * Counts a single log as requested, or each of several logs on its own worker and merges the
+     * full per-log counts, since the leading counts of each log alone do not determine the leading
+     * counts of the sum.
+     */
+    private <T extends CookieCounter<T>> List<T> countLogs(List<Path> logPaths, RowTargets targets,
+            CookieAnalysisRequest request, ScanStats stats, IntFunction<T> newCounter, LogCount<T> logCount)
+            throws IOException {
+        if (logPaths.size() == 1)
+            return logCount.count(logPaths.get(0), request, stats);
+
+        CookieAnalysisRequest perFile = request.toBuilder().threads(1).build();
+        List<Callable<List<T>>> tasks = new ArrayList<>(logPaths.size());
+        for (Path logPath : logPaths) {
+            tasks.add(() -> {
+                ScanStats fileStats = stats.forWorker();
+                List<T> fileCounts = logCount.count(logPath, perFile, fileStats);
+                stats.add(fileStats);
+                return fileCounts;
+            });
+        }
+        int workers = Math.min(logPaths.size(),
+                request.threads() > 0 ? request.threads() : Runtime.getRuntime().availableProcessors());
+        List<T> countsByDate = newCounters(targets, newCounter);
+        countConcurrently(tasks, workers, targets, countsByDate, stats);
+        return countsByDate;
+    }
+
+    /**
+     * Counts a single log for {@link #countLogs}.
+     */
+    @FunctionalInterface
+    private interface LogCount<T> {
+
+        List<T> count(Path logPath, CookieAnalysisRequest request, ScanStats stats) throws IOException;
+    }
+
+    private Optional<LogIndex> openIndex(Path logPath, IndexMode mode) throws IOException {
+        if (mode != IndexMode.IGNORE && ColumnarLog.isColumnar(logPath)) {
+            log.info("{} is a columnar log and needs no index; reading it directly", logPath);
+            return Optional.empty();
+        }
+        switch (mode) {
+            case BUILD:
+                Optional<LogIndex> built = LogIndex.build(logPath);
+                if (built.isEmpty()) {
+                    log.info("No index could be written for {}; answering from the scan", logPath);
+                }
+                return built;
+            case USE:
+                Optional<LogIndex> index = LogIndex.openIfFresh(logPath);
+                if (index.isEmpty()) {
+                    log.info("No up-to-date index for {}; scanning the log", logPath);
+                }
+                return index;
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private List<CookieCountTable> countsFromIndex(LogIndex index, TargetDates dates, int k) throws IOException {
+        List<CookieCountTable> countsByDate = new ArrayList<>(dates.size());
+        for (int i = 0; i < dates.size(); i++) {
+            countsByDate.add(index.leadingCounts(dates.get(i), k));
+        }
+        return countsByDate;
+    }
+
+    /**
+     * Scans one log into new counters, counting only the cookies the request selects.
+     */
+    private <T extends CookieCounter<T>> List<T> scan(Path logPath, RowTargets targets, CookieAnalysisRequest request,
+            ScanStats stats, IntFunction<T> newCounter) throws IOException {
+        List<T> countsByDate = newCounters(targets, newCounter);
+        CookieSelection selection = CookieSelection.of(request);
+        ScanStats selectionStats = stats.forWorker();
+        scan(logPath, targets, request, stats, newCounter, selection, countsByDate,
+                selection.wrap(countsByDate, selectionStats));
+        stats.add(selectionStats);
+        return countsByDate;
+    }
+
+    /**
+     * @param scanCounters {@code countsByDate} as seen through the selection, for counting in this thread
+     */
+    private <T extends CookieCounter<T>> void scan(Path logPath, RowTargets targets, CookieAnalysisRequest request,
+            ScanStats stats, IntFunction<T> newCounter, CookieSelection selection, List<T> countsByDate,
+            List<? extends CookieCounter<?>> scanCounters) throws IOException {
+        if (ColumnarLog.isColumnar(logPath)) {
+            if (!(targets instanceof TargetDates dates))
+                throw new IllegalArgumentException(logPath + " is a columnar log, which keeps no times of day; "
+                        + "count time windows from the CSV log");
+            long start = System.nanoTime();
+            ColumnarLog.open(logPath).count(dates, scanCounters, stats);
+            stats.addTime(ScanStats.Phase.SCAN, System.nanoTime() - start);
+            return;
+        }
+        LogCompression compression = LogCompression.detect(logPath);
+        if (compression != LogCompression.NONE) {
+            if (request.sorted() || request.threads() > 1) {
+                log.info("{} is {}-compressed; reading it as a single stream", logPath, compression);
+            }
+            long start = System.nanoTime();
+            try (InputStream in = compression.open(logPath)) {
+                request.parser().parser().count(in, targets, scanCounters, stats);
+            }
+            stats.addBytesRead(Files.size(logPath));
+            stats.addTime(ScanStats.Phase.SCAN, System.nanoTime() - start);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            long start = System.nanoTime();
+            LogRange range;
+            if (request.sorted()) {
+                TargetDates written = targets.writtenDates();
+                range = new SortedLogSeeker(channel).findBlock(written.first(), written.last());
+                stats.addTime(ScanStats.Phase.SEEK, System.nanoTime() - start);
+            } else {
+                range = LogRange.data(channel);
+            }
+            stats.addBytesRead(range.end() - range.start());
+
+            if (request.pipeline() > 0) {
+                if (request.threads() > 1) {
+                    log.info("Pipelining {} through {} parsers instead of {} chunks", logPath, request.pipeline(),
+                            request.threads());
+                }
+                start = System.nanoTime();
+                LogPipeline.count(channel, range, targets, scanCounters, request.pipeline(), stats);
+                stats.addTime(ScanStats.Phase.SCAN, System.nanoTime() - start);
+            } else if (request.threads() > 1) {
+                countInParallel(channel, range.split(channel, request.threads()), request.parser().parser(),
+                        targets, selection, countsByDate, newCounter, stats);
+            } else {
+                start = System.nanoTime();
+                request.parser().parser().count(channel, range, targets, scanCounters, stats);
+                stats.addTime(ScanStats.Phase.SCAN, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static <T extends CookieCounter<T>> List<T> newCounters(RowTargets targets, IntFunction<T> newCounter) {
+        return new LazyCounters<>(targets.size(), newCounter);
+    }
+
+    /**
+     * Counts each chunk on its own worker into thread-local counters and merges the counters once
+     * all chunks are done.
+     */
+    private <T extends CookieCounter<T>> void countInParallel(FileChannel channel, List<LogRange> chunks,
+            CookieLogParser parser, RowTargets targets, CookieSelection selection, List<T> countsByDate,
+            IntFunction<T> newCounter, ScanStats stats) throws IOException {
+        List<Callable<List<T>>> tasks = new ArrayList<>(chunks.size());
+        for (LogRange chunk : chunks) {
+            tasks.add(() -> {
+                long start = System.nanoTime();
+                ScanStats chunkStats = stats.forWorker();
+                List<T> chunkCounts = newCounters(targets, newCounter);
+                parser.count(channel, chunk, targets, selection.wrap(chunkCounts, chunkStats), chunkStats);
+                chunkStats.addTime(ScanStats.Phase.SCAN, System.nanoTime() - start);
+                stats.add(chunkStats);
+                return chunkCounts;
+            });
+        }
+        countConcurrently(tasks, chunks.size(), targets, countsByDate, stats);
+    }
+
+    /**
+     * Runs the counting tasks on {@code workers} threads and adds each task's counters into
+     * {@code countsByDate}.
+     */
+    private <T extends CookieCounter<T>> void countConcurrently(List<Callable<List<T>>> tasks, int workers,
+            RowTargets targets, List<T> countsByDate, ScanStats stats) throws IOException {
+        if (tasks.isEmpty())
+            return;
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<List<T>>> futures = new ArrayList<>(tasks.size());
+            for (Callable<List<T>> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<List<T>> future : futures) {
+                List<T> taskCounts = future.get();
+                long start = System.nanoTime();
+                for (int i = 0; i < targets.size(); i++) {
+                    if (LazyCounters.isCreated(taskCounts, i)) {
+                        countsByDate.get(i).addAll(taskCounts.get(i));
+                    }
+                }
+                stats.addTime(ScanStats.Phase.MERGE, System.nanoTime() - start);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException)
+                throw ioException;
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException)
+                throw uncheckedIOException.getCause();
+            throw new IllegalStateException("Failed to count part of the log", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning the log file");
+        } finally {
+            executor.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,225 @@
+package com.example.parser.cookie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers kept on disk across runs, for workloads that repeat the same analyses over the same
+ * logs. An answer is stored under a key digesting the request and a fingerprint of every log it
+ * reads: the log's path, size and modification time, and samples of its content spread over the
+ * file, so an answer is only found again for logs that look unchanged without reading them whole.
+ * <p>
+ * Each answer is a file {@code <key>.answer} holding its report lines and cookies, written
+ * atomically. A file's modification time records its last use; once the files exceed the budget,
+ * the least recently used are deleted. Several processes may share the directory: a file
+ * vanishing or unreadable is a miss.
+ */
+@Slf4j
+final class ResultCache {
+
+    static final String SUFFIX = ".answer";
+
+    private static final int MAGIC = 0x434B5243; // "CKRC"
+    private static final int VERSION = 1;
+    private static final int SAMPLES = 16;
+    private static final int SAMPLE_SIZE = 4096;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long budgetBytes;
+
+    /**
+     * A cached answer: the lines reported, without the {@code Stats: } line, and the cookies returned.
+     */
+    record Answer(List<String> lines, List<String> cookies) {
+    }
+
+    ResultCache(Path directory, long budgetBytes) {
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Digests everything the answer to {@code request} depends on: the request itself, except for
+     * whether stats are reported, and the fingerprint of every log it resolves to.
+     */
+    static String keyOf(CookieAnalysisRequest request) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(request.toBuilder().stats(false).build().toString().getBytes(StandardCharsets.UTF_8));
+        for (Path logPath : LogFiles.resolve(request.filePaths())) {
+            fingerprint(logPath, digest);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Adds the log's absolute path, size, modification time and {@value #SAMPLES} evenly spaced
+     * samples of {@value #SAMPLE_SIZE} bytes, the last ending at the end of the file, to the digest.
+     */
+    private static void fingerprint(Path logPath, MessageDigest digest) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(logPath, BasicFileAttributes.class);
+        long size = attributes.size();
+        digest.update(logPath.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(ByteBuffer.allocate(2 * Long.BYTES).putLong(size)
+                .putLong(attributes.lastModifiedTime().toMillis()).flip());
+
+        ByteBuffer sample = ByteBuffer.allocate(SAMPLE_SIZE);
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            long span = Math.max(0, size - SAMPLE_SIZE);
+            for (int i = 0; i < SAMPLES; i++) {
+                long position = span * i / (SAMPLES - 1);
+                sample.clear();
+                while (sample.hasRemaining()) {
+                    if (channel.read(sample, position + sample.position()) <= 0)
+                        break;
+                }
+                digest.update(sample.flip());
+            }
+        }
+    }
+
+    /**
+     * @return the answer stored under {@code key}, marked as just used, or empty when there is none
+     */
+    Optional<Answer> get(String key) {
+        Path path = pathFor(key);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a cached answer of this version");
+            long size = Files.size(path);
+            Answer answer = new Answer(readStrings(in, size), readStrings(in, size));
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(answer);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cached answer {}: {}", path, e.getMessage());
+            deleteQuietly(path);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores {@code answer} under {@code key}, then evicts the least recently used answers until the
+     * cache is back within its budget. Failing to write is logged, not thrown: the answer was given.
+     */
+    void put(String key, Answer answer) {
+        Path tempPath = null;
+        try {
+            Files.createDirectories(directory);
+            tempPath = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempPath), IO_BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeStrings(out, answer.lines());
+                writeStrings(out, answer.cookies());
+            }
+            Files.move(tempPath, pathFor(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException e) {
+            log.warn("Failed to cache the answer in {}: {}", directory, e.getMessage());
+            if (tempPath != null) {
+                deleteQuietly(tempPath);
+            }
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> paths;
+        try (Stream<Path> listed = Files.list(directory)) {
+            paths = listed.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).toList();
+        }
+        List<CachedFile> files = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+            } catch (NoSuchFileException e) {
+                // evicted by another process meanwhile
+            }
+        }
+        long bytes = files.stream().mapToLong(CachedFile::size).sum();
+        files.sort(Comparator.comparingLong(CachedFile::lastUsedMillis));
+        for (int i = 0; bytes > budgetBytes && i < files.size(); i++) {
+            deleteQuietly(files.get(i).path());
+            bytes -= files.get(i).size();
+            log.debug("Evicted cached answer {}", files.get(i).path());
+        }
+    }
+
+    private record CachedFile(Path path, long size, long lastUsedMillis) {
+    }
+
+    private Path pathFor(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    /**
+     * Reads a list written by {@link #writeStrings}, checking every count and length against the
+     * size of the file before allocating for it, so a corrupt file is an {@link IOException}.
+     */
+    private static List<String> readStrings(DataInputStream in, long fileSize) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > fileSize / Integer.BYTES)
+            throw new IOException("Corrupt cached answer: " + count + " strings in " + fileSize + " bytes");
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            if (length < 0 || length > fileSize)
+                throw new IOException("Corrupt cached answer: a string of " + length + " bytes in " + fileSize);
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every Java runtime", e);
+        }
+    }
+}
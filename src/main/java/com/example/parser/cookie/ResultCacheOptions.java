@@ -0,0 +1,12 @@
+package com.example.parser.cookie;
+
+import java.nio.file.Path;
+
+/**
+ * @param directory where cached answers are kept; created when missing and shared by every run using it
+ * @param budgetBytes bound on the bytes of the cached answers, beyond which the least recently used go
+ */
+public record ResultCacheOptions(Path directory, long budgetBytes) {
+
+    public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+}
@@ -0,0 +1,44 @@
+package com.example.parser.cookie;
+
+import java.nio.ByteBuffer;
+import java.time.format.DateTimeParseException;
+
+/**
+ * What the parsers count rows into: one counter per target, addressed by a dense index. The
+ * targets are either whole dates as written in the log ({@link TargetDates}) or time windows of
+ * the rows' instants ({@link TimeWindows}).
+ */
+interface RowTargets {
+
+    /** A valid row that belongs to none of the targets. */
+    int OTHER = -1;
+    /** A row whose timestamp cannot be read. */
+    int INVALID = -2;
+
+    /**
+     * @return the number of targets, and so of counters
+     */
+    int size();
+
+    /**
+     * Byte engine lookup over the trimmed timestamp {@code [start, end)}, which holds at least
+     * {@value TargetDates#DATE_LENGTH} bytes.
+     *
+     * @return the index of the row's target, {@link #OTHER} or {@link #INVALID}
+     */
+    int indexOf(ByteBuffer buffer, int start, int end);
+
+    /**
+     * Reference lookup for the string engine.
+     *
+     * @return the index of the row's target or {@link #OTHER}
+     * @throws DateTimeParseException if the timestamp cannot be read
+     */
+    int indexOf(CookieLogLine line);
+
+    /**
+     * @return the dates the rows of these targets can carry at the start of their timestamps, for
+     *         seeking in sorted logs
+     */
+    TargetDates writtenDates();
+}
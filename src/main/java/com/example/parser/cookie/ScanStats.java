@@ -0,0 +1,215 @@
+package com.example.parser.cookie;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Counters and phase timings of one analysis: what was read, how many rows matched, why the others
+ * were skipped and where the time went.
+ * <p>
+ * Row counters are plain fields bumped from the scanning loops, so each worker counts into its own
+ * {@link #forWorker() instance} and the instances are {@link #add added} together once the worker is done. Phase times
+ * of concurrent workers are summed, so with several workers they can exceed the wall time.
+ * <p>
+ * A row is skipped as {@link SkipReason#INVALID_DATE} when its timestamp does not start with a date.
+ * The string engine parses the date, so it also reports calendar-invalid dates such as
+ * {@code 2018-02-30} there; the byte engine only checks the {@code yyyy-MM-dd} shape and counts
+ * those under {@link SkipReason#OTHER_DATE}.
+ */
+@Slf4j
+public final class ScanStats {
+
+    /** Rows with an invalid date logged per analysis before they are only counted. */
+    private static final int LOGGED_INVALID_DATES = 5;
+
+    public enum SkipReason {
+        /** Only whitespace. */
+        BLANK,
+        /** Not a {@code cookie,timestamp} pair, or a timestamp shorter than a date. */
+        MALFORMED,
+        /** A timestamp that does not start with a valid date. */
+        INVALID_DATE,
+        /** A valid row dated outside the requested dates. */
+        OTHER_DATE,
+        /** A row of a requested date whose cookie the request's filters leave out. */
+        FILTERED
+    }
+
+    public enum Phase {
+        /** Expanding the inputs and skipping logs that cannot hold the dates. */
+        RESOLVE,
+        /** Opening or building indexes and reading counts from them. */
+        INDEX,
+        /** Binary-searching sorted logs for the dates' rows. */
+        SEEK,
+        /** Reading, parsing, filtering and counting rows. */
+        SCAN,
+        /** Merging per-worker count tables. */
+        MERGE,
+        /** Ranking the counts into the reported cookies. */
+        RANK
+    }
+
+    long bytesRead;
+    long rowsScanned;
+    long rowsMatched;
+    long blankRows;
+    long malformedRows;
+    long invalidDateRows;
+    long otherDateRows;
+    long filteredRows;
+    private long distinctCookies;
+    private int logsRead;
+    private int logsSkipped;
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+    /** Invalid dates logged so far, shared with the stats of every worker of the analysis. */
+    private final AtomicInteger loggedInvalidDates;
+
+    public ScanStats() {
+        this(new AtomicInteger());
+    }
+
+    private ScanStats(AtomicInteger loggedInvalidDates) {
+        this.loggedInvalidDates = loggedInvalidDates;
+    }
+
+    /**
+     * @return empty stats for one worker of this analysis, to be {@link #add added} to these once it
+     *         is done; the first few invalid dates are logged once for the whole analysis
+     */
+    ScanStats forWorker() {
+        return new ScanStats(loggedInvalidDates);
+    }
+
+    /**
+     * Counts a row whose date could not be parsed, logging the first few without a stack trace.
+     */
+    void invalidDate(CharSequence timestamp) {
+        invalidDateRows++;
+        if (loggedInvalidDates.get() >= LOGGED_INVALID_DATES)
+            return;
+        int logged = loggedInvalidDates.incrementAndGet();
+        if (logged <= LOGGED_INVALID_DATES) {
+            log.warn("Malformed date in log file: {}", timestamp);
+            if (logged == LOGGED_INVALID_DATES) {
+                log.warn("Further malformed dates are counted but not logged");
+            }
+        }
+    }
+
+    void addTime(Phase phase, long nanos) {
+        synchronized (phaseNanos) {
+            phaseNanos.merge(phase, nanos, Long::sum);
+        }
+    }
+
+    synchronized void add(ScanStats other) {
+        bytesRead += other.bytesRead;
+        rowsScanned += other.rowsScanned;
+        rowsMatched += other.rowsMatched;
+        blankRows += other.blankRows;
+        malformedRows += other.malformedRows;
+        invalidDateRows += other.invalidDateRows;
+        otherDateRows += other.otherDateRows;
+        filteredRows += other.filteredRows;
+        distinctCookies += other.distinctCookies;
+        logsRead += other.logsRead;
+        logsSkipped += other.logsSkipped;
+        other.phaseNanos().forEach(this::addTime);
+    }
+
+    synchronized void addBytesRead(long bytes) {
+        bytesRead += bytes;
+    }
+
+    synchronized void addLogs(int read, int skipped) {
+        logsRead += read;
+        logsSkipped += skipped;
+    }
+
+    synchronized void addDistinctCookies(long cookies) {
+        distinctCookies += cookies;
+    }
+
+    public synchronized long bytesRead() {
+        return bytesRead;
+    }
+
+    public synchronized long rowsScanned() {
+        return rowsScanned;
+    }
+
+    public synchronized long rowsMatched() {
+        return rowsMatched;
+    }
+
+    public synchronized long rowsSkipped(SkipReason reason) {
+        return switch (reason) {
+            case BLANK -> blankRows;
+            case MALFORMED -> malformedRows;
+            case INVALID_DATE -> invalidDateRows;
+            case OTHER_DATE -> otherDateRows;
+            case FILTERED -> filteredRows;
+        };
+    }
+
+    /**
+     * @return the distinct cookies counted, summed over the requested dates
+     */
+    public synchronized long distinctCookies() {
+        return distinctCookies;
+    }
+
+    public synchronized int logsRead() {
+        return logsRead;
+    }
+
+    public synchronized int logsSkipped() {
+        return logsSkipped;
+    }
+
+    public Map<Phase, Long> phaseNanos() {
+        synchronized (phaseNanos) {
+            return new EnumMap<>(phaseNanos);
+        }
+    }
+
+    /**
+     * @return the counters and per-phase milliseconds as a single-line JSON object
+     */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"bytesRead\":").append(bytesRead)
+                .append(",\"rowsScanned\":").append(rowsScanned)
+                .append(",\"rowsMatched\":").append(rowsMatched)
+                .append(",\"rowsSkipped\":{");
+        SkipReason[] reasons = SkipReason.values();
+        for (int i = 0; i < reasons.length; i++) {
+            json.append(i == 0 ? "" : ",").append('"').append(camelCase(reasons[i])).append("\":")
+                    .append(rowsSkipped(reasons[i]));
+        }
+        json.append("},\"distinctCookies\":").append(distinctCookies)
+                .append(",\"logsRead\":").append(logsRead)
+                .append(",\"logsSkipped\":").append(logsSkipped)
+                .append(",\"phaseMillis\":{");
+        Map<Phase, Long> nanos = phaseNanos();
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            json.append(i == 0 ? "" : ",").append('"').append(camelCase(phases[i])).append("\":")
+                    .append(String.format(Locale.ROOT, "%.3f", nanos.getOrDefault(phases[i], 0L) / 1e6));
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String camelCase(Enum<?> constant) {
+        String[] words = constant.name().toLowerCase(Locale.ROOT).split("_");
+        StringBuilder name = new StringBuilder(words[0]);
+        for (int i = 1; i < words.length; i++) {
+            name.append(Character.toUpperCase(words[i].charAt(0))).append(words[i], 1, words[i].length());
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.parser.cookie;
+
+/**
+ * @param port loopback port to accept queries on; 0 to read them from standard input instead
+ * @param cacheCookies bound on the distinct cookies held by the cached count tables
+ */
+public record ServerOptions(int port, long cacheCookies) {
+
+    public static final long DEFAULT_CACHE_COOKIES = 2_000_000;
+}
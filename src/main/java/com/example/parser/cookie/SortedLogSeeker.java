@@ -0,0 +1,177 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Locates the block of rows for a span of dates in a log whose rows are sorted by timestamp, using a
+ * binary search over byte offsets. Each probe seeks to an offset, resynchronises on the next
+ * newline and reads a single row, so finding the block costs O(log n) small reads. The block
+ * ends where the search for the date after the span lands, so the scan never reads past it.
+ * <p>
+ * Both descending (the format we write) and ascending logs are supported; the direction is
+ * detected from the first and last dated rows.
+ */
+class SortedLogSeeker {
+
+    private static final int PROBE_SIZE = 256;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long dataStart;
+
+    SortedLogSeeker(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.dataStart = LogRange.data(channel).start();
+    }
+
+    /**
+     * @return the range holding every row dated from {@code from} to {@code to} inclusive; empty
+     *         when there are none. Malformed rows inside the range are left to the parser to skip.
+     */
+    LogRange findBlock(LocalDate from, LocalDate to) throws IOException {
+        LocalDate first = firstDateFrom(dataStart);
+        LocalDate last = lastDate();
+        if (first == null || last == null)
+            return new LogRange(size, size);
+
+        boolean descending = !first.isBefore(last);
+        if (descending) {
+            return new LogRange(firstOffsetReaching(to, true), firstOffsetReaching(from.minusDays(1), true));
+        }
+        return new LogRange(firstOffsetReaching(from, false), firstOffsetReaching(to.plusDays(1), false));
+    }
+
+    /**
+     * @return whether any target date falls between the first and last dated rows, i.e. whether
+     *         the log can hold rows for any of them at all
+     */
+    boolean mayContainAnyOf(TargetDates dates) throws IOException {
+        LocalDate first = firstDateFrom(dataStart);
+        LocalDate last = lastDate();
+        if (first == null || last == null)
+            return false;
+
+        LocalDate earliest = first.isBefore(last) ? first : last;
+        LocalDate latest = first.isBefore(last) ? last : first;
+        for (int i = 0; i < dates.size(); i++) {
+            LocalDate date = dates.get(i);
+            if (!date.isBefore(earliest) && !date.isAfter(latest))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the start of the first row dated {@code date} or later in the sort order
+     */
+    private long firstOffsetReaching(LocalDate date, boolean descending) throws IOException {
+        long lo = dataStart;
+        long hi = size;
+        while (lo < hi) {
+            long mid = lo + (hi - lo) / 2;
+            LocalDate probe = firstDateFrom(nextLineStart(mid));
+            boolean reached = probe == null
+                    || (descending ? !probe.isAfter(date) : !probe.isBefore(date));
+            if (reached) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return nextLineStart(lo);
+    }
+
+    private long nextLineStart(long position) throws IOException {
+        if (position <= dataStart)
+            return dataStart;
+        Line line = readLine(position - 1);
+        return line == null ? size : line.end();
+    }
+
+    private LocalDate firstDateFrom(long start) throws IOException {
+        long position = start;
+        Line line;
+        while ((line = readLine(position)) != null) {
+            LocalDate date = dateOf(line.text());
+            if (date != null)
+                return date;
+            position = line.end();
+        }
+        return null;
+    }
+
+    private LocalDate lastDate() throws IOException {
+        long end = size;
+        while (end > dataStart) {
+            long start = lineStartBefore(end);
+            Line line = readLine(start);
+            LocalDate date = line == null ? null : dateOf(line.text());
+            if (date != null)
+                return date;
+            end = start;
+        }
+        return null;
+    }
+
+    /**
+     * @return the start of the line whose terminating newline (if any) is the last byte before {@code end}
+     */
+    private long lineStartBefore(long end) throws IOException {
+        // step over the newline that terminates the previous line
+        long position = end - 1;
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+        while (position > dataStart) {
+            long chunkStart = Math.max(dataStart, position - PROBE_SIZE);
+            buffer.clear().limit((int) (position - chunkStart));
+            channel.read(buffer, chunkStart);
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n')
+                    return chunkStart + i + 1;
+            }
+            position = chunkStart;
+        }
+        return dataStart;
+    }
+
+    /**
+     * @return the line starting at {@code start} without its terminator, or {@code null} at end of file
+     */
+    private Line readLine(long start) throws IOException {
+        if (start >= size)
+            return null;
+
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, start);
+            int length = Math.max(read, 0);
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n')
+                    return new Line(new String(buffer.array(), 0, i, StandardCharsets.UTF_8), start + i + 1);
+            }
+            if (start + length >= size)
+                return new Line(new String(buffer.array(), 0, length, StandardCharsets.UTF_8), size);
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        }
+    }
+
+    private static LocalDate dateOf(String text) {
+        CookieLogLine line = CookieLogLine.parse(text);
+        if (line == null)
+            return null;
+        try {
+            return line.date();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private record Line(String text, long end) {
+    }
+}
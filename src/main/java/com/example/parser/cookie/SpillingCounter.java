@@ -0,0 +1,218 @@
+package com.example.parser.cookie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exact counts under a memory budget. Cookies are counted in a {@link CookieCountTable} until it
+ * holds {@code maxCookies} of them; the table is then appended as {@code (cookie, count)} records
+ * to one spill file per hash partition and counting starts over in an empty table.
+ * <p>
+ * Every record of a cookie lands in the same partition, so ranking counts one partition at a time
+ * and combines the partitions' leading counts. A partition that is itself over the budget is
+ * spilled again, partitioned on the next bits of the hash. Results match those of a single table,
+ * except that cookies tied at the highest count come in cookie order once anything was spilled.
+ */
+@Slf4j
+final class SpillingCounter implements CookieCounter<SpillingCounter> {
+
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    /** Partitioning levels before the hash runs out of bits; the last level never spills. */
+    private static final int MAX_DEPTH = Integer.SIZE / PARTITION_BITS;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final int maxCookies;
+    private final Path spillDirectory;
+    /** Which group of hash bits, from the highest down, picks the partition. */
+    private final int depth;
+    /** Spill files of each partition: the first is appended to, the rest come from merged counters. */
+    private final List<List<Path>> partitions = new ArrayList<>(PARTITIONS);
+    private CookieCountTable counts = new CookieCountTable();
+    private boolean spilled;
+    private int rankedCookies;
+
+    /**
+     * @param spillDirectory where spill files are created; the caller deletes it once done ranking
+     */
+    SpillingCounter(int maxCookies, Path spillDirectory) {
+        this(maxCookies, spillDirectory, 0);
+    }
+
+    private SpillingCounter(int maxCookies, Path spillDirectory, int depth) {
+        this.maxCookies = maxCookies;
+        this.spillDirectory = spillDirectory;
+        this.depth = depth;
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions.add(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public void increment(byte[] key, int offset, int length) {
+        increment(key, offset, length, 1);
+    }
+
+    @Override
+    public void increment(byte[] key, int offset, int length, int count) {
+        counts.add(key, offset, length, count);
+        spillIfFull();
+    }
+
+    /**
+     * Adds the cookies {@code other} holds in memory, which may take this table up to twice its
+     * budget before it is spilled, and takes over its spill files.
+     */
+    @Override
+    public void addAll(SpillingCounter other) {
+        counts.addAll(other.counts);
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions.get(i).addAll(other.partitions.get(i));
+        }
+        spilled |= other.spilled;
+        spillIfFull();
+    }
+
+    /**
+     * @return the distinct cookies counted: those in memory until anything was spilled, and after
+     *         that those found by the last ranking
+     */
+    @Override
+    public int size() {
+        return spilled ? rankedCookies : counts.size();
+    }
+
+    /**
+     * @return at most {@code k} cookies ordered by {@link CookieRanking#BY_RANK}
+     */
+    List<CookieCount> top(int k) throws IOException {
+        if (!spilled)
+            return CookieRanking.top(counts, k);
+
+        spill();
+        rankedCookies = 0;
+        List<CookieCount> top = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            SpillingCounter partition = aggregate(i);
+            top.addAll(partition.top(k));
+            rankedCookies += partition.size();
+        }
+        top.sort(CookieRanking.BY_RANK);
+        return new ArrayList<>(top.subList(0, Math.min(k, top.size())));
+    }
+
+    /**
+     * @return every cookie tied at the highest count
+     */
+    List<CookieCount> mostActive() throws IOException {
+        if (!spilled)
+            return CookieRanking.mostActive(counts);
+
+        spill();
+        rankedCookies = 0;
+        List<CookieCount> mostActive = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            SpillingCounter partition = aggregate(i);
+            List<CookieCount> partitionMostActive = partition.mostActive();
+            rankedCookies += partition.size();
+            if (partitionMostActive.isEmpty())
+                continue;
+            int count = partitionMostActive.get(0).count();
+            if (!mostActive.isEmpty() && count > mostActive.get(0).count()) {
+                mostActive.clear();
+            }
+            if (mostActive.isEmpty() || count == mostActive.get(0).count()) {
+                mostActive.addAll(partitionMostActive);
+            }
+        }
+        mostActive.sort(CookieRanking.BY_RANK);
+        return mostActive;
+    }
+
+    private void spillIfFull() {
+        if (counts.size() >= maxCookies && depth < MAX_DEPTH - 1) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to spill counts to " + spillDirectory, e);
+            }
+        }
+    }
+
+    /**
+     * Appends every cookie in memory to its partition's spill file and empties the table.
+     */
+    private void spill() throws IOException {
+        if (counts.size() == 0)
+            return;
+
+        List<DataOutputStream> outs = new ArrayList<>(PARTITIONS);
+        try {
+            for (int i = 0; i < PARTITIONS; i++) {
+                List<Path> files = partitions.get(i);
+                if (files.isEmpty()) {
+                    String prefix = "partition-" + depth + "-" + i + "-";
+                    files.add(Files.createTempFile(spillDirectory, prefix, ".spill"));
+                }
+                outs.add(new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(files.get(0), StandardOpenOption.APPEND), IO_BUFFER_SIZE)));
+            }
+            spilled = true;
+            for (int id = 0; id < counts.size(); id++) {
+                DataOutputStream out = outs.get(partition(counts.cookieHash(id)));
+                out.writeInt(counts.cookieLength(id));
+                counts.writeCookie(id, out);
+                out.writeInt(counts.count(id));
+            }
+        } finally {
+            for (DataOutputStream out : outs) {
+                out.close();
+            }
+        }
+        log.debug("Spilled {} cookies to {}", counts.size(), spillDirectory);
+        counts = new CookieCountTable();
+    }
+
+    private int partition(int hash) {
+        return (hash >>> (Integer.SIZE - PARTITION_BITS * (depth + 1))) & (PARTITIONS - 1);
+    }
+
+    /**
+     * Counts the records of one partition into a counter of their own.
+     */
+    private SpillingCounter aggregate(int partition) throws IOException {
+        SpillingCounter aggregated = new SpillingCounter(maxCookies, spillDirectory, depth + 1);
+        byte[] key = new byte[64];
+        for (Path file : partitions.get(partition)) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length > key.length) {
+                        key = new byte[Math.max(length, key.length * 2)];
+                    }
+                    in.readFully(key, 0, length);
+                    aggregated.counts.add(key, 0, length, in.readInt());
+                    aggregated.spillIfFull();
+                }
+            }
+        }
+        return aggregated;
+    }
+}
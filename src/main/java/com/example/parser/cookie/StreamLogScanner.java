@@ -0,0 +1,135 @@
+package com.example.parser.cookie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Feeds a {@link ByteRowScanner} from a stream that cannot be mapped, such as a decompressing
+ * one. A background thread reads (and so decompresses) the stream into a small pool of recycled
+ * buffers while the calling thread scans the buffers it has already been handed, so reading and
+ * parsing overlap. The bounded pool keeps memory fixed and stalls the reader when parsing lags.
+ * <p>
+ * Lines cut at a buffer boundary are stitched together in a carry buffer. The first line of the
+ * stream is the CSV header and is skipped. Row offsets are positions in the uncompressed stream.
+ */
+final class StreamLogScanner {
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNK_COUNT = 4;
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(CHUNK_COUNT + 1);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(CHUNK_COUNT);
+    private volatile IOException readFailure;
+
+    private final ByteRowScanner scanner;
+    private ByteBuffer carry = ByteBuffer.allocate(256);
+    private boolean inHeader = true;
+    private long streamOffset;
+
+    private StreamLogScanner(ByteRowScanner scanner) {
+        this.scanner = scanner;
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            free.add(ByteBuffer.allocate(CHUNK_SIZE));
+        }
+    }
+
+    static void scan(InputStream in, ByteRowScanner scanner) throws IOException {
+        new StreamLogScanner(scanner).run(in);
+    }
+
+    private void run(InputStream in) throws IOException {
+        Thread reader = new Thread(() -> readAll(in), "log-stream-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            while (true) {
+                ByteBuffer chunk = filled.take();
+                if (chunk == END_OF_STREAM)
+                    break;
+                scanChunk(chunk);
+                free.put(chunk);
+            }
+            if (readFailure != null)
+                throw readFailure;
+            if (!inHeader && carry.position() > 0) {
+                scanner.scan(carry, streamOffset - carry.position(), 0, carry.position(), true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning the log stream");
+        } finally {
+            reader.interrupt();
+        }
+    }
+
+    private void readAll(InputStream in) {
+        try {
+            while (true) {
+                ByteBuffer chunk = free.take();
+                int length = in.readNBytes(chunk.array(), 0, CHUNK_SIZE);
+                if (length == 0)
+                    break;
+                chunk.clear().limit(length);
+                filled.put(chunk);
+            }
+        } catch (IOException e) {
+            readFailure = e;
+        } catch (InterruptedException e) {
+            return;
+        }
+        filled.add(END_OF_STREAM);
+    }
+
+    private void scanChunk(ByteBuffer chunk) {
+        int length = chunk.limit();
+        int start = 0;
+        if (inHeader || carry.position() > 0) {
+            int newline = indexOfNewline(chunk, 0, length);
+            if (newline < 0) {
+                appendToCarry(chunk, 0, length);
+                streamOffset += length;
+                return;
+            }
+            if (inHeader) {
+                inHeader = false;
+                carry.clear();
+            } else {
+                appendToCarry(chunk, 0, newline + 1);
+                scanner.scan(carry, streamOffset - (carry.position() - newline - 1), 0, carry.position(), true);
+                carry.clear();
+            }
+            start = newline + 1;
+        }
+
+        int consumed = scanner.scan(chunk, streamOffset, start, length, false);
+        appendToCarry(chunk, consumed, length);
+        streamOffset += length;
+    }
+
+    private void appendToCarry(ByteBuffer chunk, int from, int to) {
+        if (inHeader)
+            return;
+        int length = to - from;
+        if (carry.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(carry.capacity() * 2, carry.position() + length));
+            carry.flip();
+            grown.put(carry);
+            carry = grown;
+        }
+        carry.put(carry.position(), chunk, from, length);
+        carry.position(carry.position() + length);
+    }
+
+    private static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n')
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.parser.cookie;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Reference parser: decodes the range line by line and parses each row with {@link CookieLogLine}.
+ */
+class StringLogParser implements CookieLogParser {
+
+    /**
+     * Size of the character buffer used while streaming the log. Memory use is bounded by
+     * this buffer plus the count table, independent of the size of the file.
+     */
+    static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public void count(FileChannel channel, LogRange range, RowTargets targets,
+            List<? extends CookieCounter<?>> countsByDate, ScanStats stats) throws IOException {
+        countLines(newReader(new RangeInputStream(channel, range)), targets, countsByDate, stats);
+    }
+
+    @Override
+    public void count(InputStream in, RowTargets targets, List<? extends CookieCounter<?>> countsByDate,
+            ScanStats stats) throws IOException {
+        BufferedReader reader = newReader(in);
+        reader.readLine(); // skip CSV header
+        countLines(reader, targets, countsByDate, stats);
+    }
+
+    private BufferedReader newReader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder()), READ_BUFFER_SIZE);
+    }
+
+    private void countLines(BufferedReader reader, RowTargets targets, List<? extends CookieCounter<?>> countsByDate,
+            ScanStats stats) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            countLine(line, targets, countsByDate, stats);
+        }
+    }
+
+    private void countLine(String rawLine, RowTargets targets, List<? extends CookieCounter<?>> countsByDate,
+            ScanStats stats) {
+        stats.rowsScanned++;
+        CookieLogLine line = CookieLogLine.parse(rawLine);
+        if (line == null) {
+            if (rawLine.trim().isEmpty()) {
+                stats.blankRows++;
+            } else {
+                stats.malformedRows++;
+            }
+            return;
+        }
+
+        try {
+            int index = targets.indexOf(line);
+            if (index >= 0) {
+                countsByDate.get(index).increment(line.cookie());
+                stats.rowsMatched++;
+            } else {
+                stats.otherDateRows++;
+            }
+        } catch (DateTimeParseException e) {
+            stats.invalidDate(line.timestamp());
+        }
+    }
+
+    /**
+     * Reads a range of the channel with positional reads, leaving the channel position untouched.
+     */
+    private static class RangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, LogRange range) {
+            this.channel = channel;
+            this.position = range.start();
+            this.end = range.end();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end)
+                return -1;
+            int toRead = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if (read > 0)
+                position += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.parser.cookie;
+
+import java.util.List;
+
+/**
+ * Counts the rows that belong to one of the {@link RowTargets targets} into that target's counter.
+ * For target dates, rows from other dates are skipped after checking only that their date has the
+ * {@code yyyy-MM-dd} shape, which decides whether they are reported as invalid or other-date rows.
+ */
+final class TargetDateCounter implements ByteRowScanner.RowHandler {
+
+    private final RowTargets targets;
+    private final List<? extends CookieCounter<?>> countsByDate;
+    private final ScanStats stats;
+
+    TargetDateCounter(RowTargets targets, List<? extends CookieCounter<?>> countsByDate) {
+        this(targets, countsByDate, new ScanStats());
+    }
+
+    TargetDateCounter(RowTargets targets, List<? extends CookieCounter<?>> countsByDate, ScanStats stats) {
+        this.targets = targets;
+        this.countsByDate = countsByDate;
+        this.stats = stats;
+    }
+
+    @Override
+    public void onRow(ByteRowScanner.Row row) {
+        int index = targets.indexOf(row.buffer, row.timestampStart, row.timestampEnd);
+        if (index >= 0) {
+            countsByDate.get(index).increment(row.cookieBytes(), 0, row.cookieLength());
+            stats.rowsMatched++;
+        } else if (index == RowTargets.INVALID) {
+            stats.invalidDate(row.timestamp());
+        } else {
+            stats.otherDateRows++;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.parser.cookie;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The dates an analysis counts rows for, in ascending order. Each date has a dense index used
+ * to address its count table, and can be looked up either from a {@link LocalDate} or straight
+ * from the 10 {@code yyyy-MM-dd} bytes at the start of a timestamp.
+ */
+final class TargetDates implements RowTargets {
+
+    static final int DATE_LENGTH = 10;
+
+    private final List<LocalDate> dates;
+    private final Map<LocalDate, Integer> indexByDate = new HashMap<>();
+    /** {@code yyyyMMdd} of each date; ascending, so it doubles as a binary search table. */
+    private final int[] keys;
+    private final byte[] singleDate;
+
+    TargetDates(Collection<LocalDate> dates) {
+        if (dates.isEmpty())
+            throw new IllegalArgumentException("At least one date is required");
+
+        this.dates = List.copyOf(new TreeSet<>(dates));
+        this.keys = new int[this.dates.size()];
+        for (int i = 0; i < this.dates.size(); i++) {
+            LocalDate date = this.dates.get(i);
+            indexByDate.put(date, i);
+            keys[i] = date.getYear() * 10_000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+        }
+        this.singleDate = this.dates.size() == 1
+                ? this.dates.get(0).toString().getBytes(StandardCharsets.US_ASCII)
+                : null;
+    }
+
+    static TargetDates of(List<String> dateStrs) {
+        List<LocalDate> dates = new ArrayList<>(dateStrs.size());
+        for (String dateStr : dateStrs) {
+            dates.add(LocalDate.parse(dateStr));
+        }
+        return new TargetDates(dates);
+    }
+
+    @Override
+    public int size() {
+        return dates.size();
+    }
+
+    LocalDate get(int index) {
+        return dates.get(index);
+    }
+
+    /**
+     * @return every date, by index
+     */
+    List<LocalDate> all() {
+        return dates;
+    }
+
+    LocalDate first() {
+        return dates.get(0);
+    }
+
+    LocalDate last() {
+        return dates.get(dates.size() - 1);
+    }
+
+    /**
+     * @return the index of {@code date}, or -1 when it is not a target date
+     */
+    int indexOf(LocalDate date) {
+        Integer index = indexByDate.get(date);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int indexOf(ByteBuffer buffer, int start, int end) {
+        int index = indexOf(buffer, start);
+        if (index >= 0)
+            return index;
+        return dateKey(buffer, start) < 0 ? INVALID : OTHER;
+    }
+
+    @Override
+    public int indexOf(CookieLogLine line) {
+        return indexOf(line.date());
+    }
+
+    @Override
+    public TargetDates writtenDates() {
+        return this;
+    }
+
+    /**
+     * Looks up the date spelled by the {@value #DATE_LENGTH} bytes at {@code offset}. Only the
+     * canonical {@code yyyy-MM-dd} spelling of a target date matches, which is exactly the set of
+     * prefixes {@link LocalDate#parse(CharSequence)} maps to a target date.
+     *
+     * @return the index of the date, or -1 when the bytes do not spell a target date
+     */
+    int indexOf(ByteBuffer buffer, int offset) {
+        if (singleDate != null) {
+            for (int i = 0; i < DATE_LENGTH; i++) {
+                if (buffer.get(offset + i) != singleDate[i])
+                    return -1;
+            }
+            return 0;
+        }
+
+        int key = dateKey(buffer, offset);
+        if (key < 0)
+            return -1;
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * @return the {@code yyyyMMdd} value spelled by the {@value #DATE_LENGTH} bytes at
+     *         {@code offset}, or -1 when they are not digits and dashes in that shape. The value
+     *         is not checked to be a valid calendar date.
+     */
+    static int dateKey(ByteBuffer buffer, int offset) {
+        int key = 0;
+        for (int i = 0; i < DATE_LENGTH; i++) {
+            byte b = buffer.get(offset + i);
+            if (i == 4 || i == 7) {
+                if (b != '-')
+                    return -1;
+            } else {
+                int digit = b - '0';
+                if (digit < 0 || digit > 9)
+                    return -1;
+                key = key * 10 + digit;
+            }
+        }
+        return key;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.parser.cookie;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Time windows of the target dates: every date split into windows of {@code bucketMinutes}, or
+ * kept whole, on the wall clock of a zone. Rows are placed by their full timestamp, offset
+ * included, converted into the zone; without a zone, by the wall-clock time as written.
+ * <p>
+ * Timestamps are read as ISO offset date-times such as {@code 2018-12-09T14:19:00+00:00}: seconds
+ * and their fraction are optional, the offset is {@code Z} or {@code ±HH:MM[:SS]}, letters match in
+ * either case. The byte engine parses them in place without allocating, remembering the zone's
+ * offset until its next transition; the string engine goes through {@link OffsetDateTime} and is
+ * the reference. Either way, rows written for a date that cannot fall on a target date in the zone
+ * are skipped as other-date rows without reading their time.
+ * <p>
+ * On days when the zone's clocks go back, the repeated wall-clock hour falls into the same windows.
+ */
+final class TimeWindows implements RowTargets {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int MAX_OFFSET_SECONDS = 18 * 60 * 60;
+    private static final DateTimeFormatter TIMESTAMP = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            .appendOffsetId()
+            .toFormatter()
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private final TargetDates dates;
+    private final ZoneId zone;
+    private final int bucketMinutes;
+    private final int windowsPerDay;
+    private final TargetDates writtenDates;
+    /** Epoch day of each written date, by its index. */
+    private final long[] writtenEpochDays;
+    private final long firstEpochDay;
+    /** Index of the target date of each epoch day from {@link #firstEpochDay} on, or -1. */
+    private final int[] dateIndexByDay;
+
+    private final ZoneRules rules;
+    /** The zone's offset around the last instant converted; replaced whole, as workers share it. */
+    private OffsetSpan offsetSpan = new OffsetSpan(Long.MAX_VALUE, Long.MIN_VALUE, 0);
+
+    /**
+     * The zone's offset over {@code [from, until)} in epoch seconds, between two transitions.
+     */
+    private record OffsetSpan(long from, long until, int offsetSeconds) {
+    }
+
+    /**
+     * @param zone          the zone whose wall clock the dates and windows follow; {@code null} for
+     *                      the wall clock written in each timestamp
+     * @param bucketMinutes the length of a window, dividing a day; 0 for whole days
+     */
+    TimeWindows(TargetDates dates, ZoneId zone, int bucketMinutes) {
+        if (bucketMinutes < 0 || bucketMinutes > MINUTES_PER_DAY
+                || bucketMinutes > 0 && MINUTES_PER_DAY % bucketMinutes != 0)
+            throw new IllegalArgumentException("A window must divide a day into whole minutes, not " + bucketMinutes);
+        this.dates = dates;
+        this.zone = zone;
+        this.bucketMinutes = bucketMinutes == 0 ? MINUTES_PER_DAY : bucketMinutes;
+        this.windowsPerDay = MINUTES_PER_DAY / this.bucketMinutes;
+        this.rules = zone == null ? null : zone.getRules();
+
+        if (zone == null) {
+            writtenDates = dates;
+        } else {
+            TreeSet<LocalDate> written = new TreeSet<>();
+            for (int i = 0; i < dates.size(); i++) {
+                written.add(dates.get(i).minusDays(1));
+                written.add(dates.get(i));
+                written.add(dates.get(i).plusDays(1));
+            }
+            writtenDates = new TargetDates(written);
+        }
+        writtenEpochDays = new long[writtenDates.size()];
+        for (int i = 0; i < writtenEpochDays.length; i++) {
+            writtenEpochDays[i] = writtenDates.get(i).toEpochDay();
+        }
+        firstEpochDay = dates.first().toEpochDay();
+        dateIndexByDay = new int[(int) (dates.last().toEpochDay() - firstEpochDay + 1)];
+        Arrays.fill(dateIndexByDay, -1);
+        for (int i = 0; i < dates.size(); i++) {
+            dateIndexByDay[(int) (dates.get(i).toEpochDay() - firstEpochDay)] = i;
+        }
+    }
+
+    @Override
+    public int size() {
+        return dates.size() * windowsPerDay;
+    }
+
+    /**
+     * @return the wall-clock start of the window
+     */
+    LocalDateTime start(int index) {
+        LocalDateTime day = dates.get(index / windowsPerDay).atStartOfDay();
+        return day.plusMinutes((long) (index % windowsPerDay) * bucketMinutes);
+    }
+
+    @Override
+    public TargetDates writtenDates() {
+        return writtenDates;
+    }
+
+    @Override
+    public int indexOf(ByteBuffer buffer, int start, int end) {
+        int written = writtenDates.indexOf(buffer, start);
+        if (written < 0)
+            return TargetDates.dateKey(buffer, start) < 0 ? INVALID : OTHER;
+
+        // [Tt]HH:mm[:ss[.fffffffff]] after the date
+        int i = start + TargetDates.DATE_LENGTH;
+        if (end - i < 6 || (buffer.get(i) | 0x20) != 't' || buffer.get(i + 3) != ':')
+            return INVALID;
+        int hour = twoDigits(buffer, i + 1);
+        int minute = twoDigits(buffer, i + 4);
+        int second = 0;
+        i += 6;
+        if (i < end && buffer.get(i) == ':') {
+            if (end - i < 3)
+                return INVALID;
+            second = twoDigits(buffer, i + 1);
+            i += 3;
+            if (i < end && buffer.get(i) == '.') {
+                int fractionEnd = ++i;
+                while (fractionEnd < end && isDigit(buffer.get(fractionEnd)))
+                    fractionEnd++;
+                if (fractionEnd - i > 9)
+                    return INVALID;
+                i = fractionEnd;
+            }
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59)
+            return INVALID;
+
+        // [Zz] or [+-]HH:MM[:SS], ending the timestamp
+        int offsetSeconds;
+        if (end - i == 1 && (buffer.get(i) | 0x20) == 'z') {
+            offsetSeconds = 0;
+        } else if ((end - i == 6 || end - i == 9) && buffer.get(i + 3) == ':'
+                && (buffer.get(i) == '+' || buffer.get(i) == '-')) {
+            int offsetHours = twoDigits(buffer, i + 1);
+            int offsetMinutes = twoDigits(buffer, i + 4);
+            int offsetExtraSeconds = 0;
+            if (end - i == 9) {
+                if (buffer.get(i + 6) != ':')
+                    return INVALID;
+                offsetExtraSeconds = twoDigits(buffer, i + 7);
+            }
+            if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59
+                    || offsetExtraSeconds < 0 || offsetExtraSeconds > 59)
+                return INVALID;
+            offsetSeconds = offsetHours * 3600 + offsetMinutes * 60 + offsetExtraSeconds;
+            if (offsetSeconds > MAX_OFFSET_SECONDS)
+                return INVALID;
+            if (buffer.get(i) == '-') {
+                offsetSeconds = -offsetSeconds;
+            }
+        } else {
+            return INVALID;
+        }
+
+        long wallSeconds = writtenEpochDays[written] * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+        return windowOf(zone == null ? wallSeconds : toZone(wallSeconds - offsetSeconds));
+    }
+
+    @Override
+    public int indexOf(CookieLogLine line) {
+        if (writtenDates.indexOf(line.date()) < 0)
+            return OTHER;
+        OffsetDateTime time = OffsetDateTime.parse(line.timestamp(), TIMESTAMP);
+        LocalDateTime local = zone == null ? time.toLocalDateTime() : time.atZoneSameInstant(zone).toLocalDateTime();
+        return windowOf(local.toLocalDate().toEpochDay() * SECONDS_PER_DAY + local.toLocalTime().toSecondOfDay());
+    }
+
+    /**
+     * @param localSeconds wall-clock seconds since the epoch
+     */
+    private int windowOf(long localSeconds) {
+        long day = Math.floorDiv(localSeconds, SECONDS_PER_DAY) - firstEpochDay;
+        if (day < 0 || day >= dateIndexByDay.length || dateIndexByDay[(int) day] < 0)
+            return OTHER;
+        int minuteOfDay = Math.floorMod(localSeconds, SECONDS_PER_DAY) / 60;
+        return dateIndexByDay[(int) day] * windowsPerDay + minuteOfDay / bucketMinutes;
+    }
+
+    /**
+     * @return the wall-clock seconds in the zone at the instant {@code epochSecond}
+     */
+    private long toZone(long epochSecond) {
+        OffsetSpan span = offsetSpan;
+        if (epochSecond < span.from() || epochSecond >= span.until()) {
+            Instant instant = Instant.ofEpochSecond(epochSecond);
+            ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+            span = new OffsetSpan(previous == null ? Long.MIN_VALUE : previous.toEpochSecond(),
+                    next == null ? Long.MAX_VALUE : next.toEpochSecond(), rules.getOffset(instant).getTotalSeconds());
+            offsetSpan = span;
+        }
+        return epochSecond + span.offsetSeconds();
+    }
+
+    /**
+     * @return the value of the two digits at {@code offset}, or -1 when they are not digits
+     */
+    private static int twoDigits(ByteBuffer buffer, int offset) {
+        byte tens = buffer.get(offset);
+        byte units = buffer.get(offset + 1);
+        if (!isDigit(tens) || !isDigit(units))
+            return -1;
+        return (tens - '0') * 10 + units - '0';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
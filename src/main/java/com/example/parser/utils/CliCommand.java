@@ -0,0 +1,32 @@
+package com.example.parser.utils;
+
+import com.example.parser.cookie.ConversionOptions;
+import com.example.parser.cookie.CookieAnalysisRequest;
+import com.example.parser.cookie.ResultCacheOptions;
+import com.example.parser.cookie.ServerOptions;
+
+/**
+ * What a command line asks for, as parsed once by {@link CliParser#parseCommand}.
+ */
+public sealed interface CliCommand {
+
+    /**
+     * Answer one query.
+     *
+     * @param resultCache where to keep and repeat answers ({@code --result-cache}); {@code null} for none
+     */
+    record Analyze(CookieAnalysisRequest request, ResultCacheOptions resultCache) implements CliCommand {
+    }
+
+    /**
+     * Stay up and answer queries ({@code --serve}).
+     */
+    record Serve(ServerOptions options) implements CliCommand {
+    }
+
+    /**
+     * Convert a log into a columnar file ({@code --convert}).
+     */
+    record Convert(ConversionOptions options) implements CliCommand {
+    }
+}
@@ -1,10 +1,26 @@
 package com.example.parser.utils;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import org.springframework.stereotype.Component;
+import com.example.parser.cookie.ConversionOptions;
 import com.example.parser.cookie.CookieAnalysisRequest;
+import com.example.parser.cookie.IndexMode;
+import com.example.parser.cookie.LogParserType;
+import com.example.parser.cookie.ResultCacheOptions;
+import com.example.parser.cookie.ServerOptions;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.cli.*;
 
@@ -14,6 +30,40 @@ public class CliParser {
     private static final String ARG_FILE = "f";
     private static final String ARG_DATE = "d";
     private static final String ARG_HELP = "h";
+    private static final String ARG_FROM = "from";
+    private static final String ARG_TO = "to";
+    /** Longest --from/--to range, as every date of it gets a count table of its own. */
+    private static final int MAX_RANGE_DAYS = 5 * 366;
+    private static final String ARG_SORTED = "s";
+    private static final String ARG_PARSER = "parser";
+    private static final String ARG_THREADS = "threads";
+    private static final String ARG_INDEX = "index";
+    private static final String ARG_TOP = "top";
+    private static final String ARG_COUNTS = "counts";
+    private static final String ARG_FOLLOW = "follow";
+    private static final int DEFAULT_FOLLOW_SECONDS = 5;
+    private static final String ARG_STATS = "stats";
+    private static final String ARG_APPROXIMATE = "approximate";
+    private static final int DEFAULT_SKETCH_COUNTERS = 100_000;
+    /** Most counters of a sketch, whose tables are sized from them. */
+    private static final int MAX_SKETCH_COUNTERS = 1 << 29;
+    private static final String ARG_VERIFY = "verify";
+    private static final String ARG_SPILL_AFTER = "spill-after";
+    private static final String ARG_SERVE = "serve";
+    private static final String ARG_PORT = "port";
+    private static final String ARG_CACHE_SIZE = "cache-size";
+    private static final String ARG_CONVERT = "convert";
+    private static final String ARG_ZONE = "zone";
+    private static final String ARG_BUCKET = "bucket";
+    private static final String ARG_PIPELINE = "pipeline";
+    private static final int DEFAULT_PIPELINE_PARSERS = 2;
+    private static final String ARG_RESULT_CACHE = "result-cache";
+    private static final String ARG_RESULT_CACHE_BUDGET = "result-cache-budget";
+    private static final String ARG_INCLUDE = "include";
+    private static final String ARG_EXCLUDE = "exclude";
+    private static final String ARG_INCLUDE_FILE = "include-file";
+    private static final String ARG_EXCLUDE_FILE = "exclude-file";
+    private static final String ARG_GROUP_BY = "group-by";
 
 
     private Options createOptions() {
@@ -22,15 +72,187 @@ public class CliParser {
         options.addOption(Option.builder(ARG_FILE)
                 .longOpt("file")
                 .hasArg()
-                .required()
-                .desc("Path to the log file")
+                .desc("Log file, directory or glob; repeat to read several logs (required)")
                 .get());
                 
         options.addOption(Option.builder(ARG_DATE)
                 .longOpt("date")
                 .hasArg()
-                .required()
-                .desc("Date in yyyy-MM-dd format")
+                .desc("Date in yyyy-MM-dd format; repeat to query several dates")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_FROM)
+                .hasArg()
+                .desc("First date (yyyy-MM-dd) of an inclusive date range")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_TO)
+                .hasArg()
+                .desc("Last date (yyyy-MM-dd) of an inclusive date range")
+                .get());
+
+        options.addOption(Option.builder(ARG_SORTED)
+                .longOpt("sorted")
+                .desc("Log is sorted by timestamp; seek to the date instead of scanning the whole file")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_PARSER)
+                .hasArg()
+                .desc("Parser engine: string (default) or mapped")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_THREADS)
+                .hasArg()
+                .desc("Number of threads scanning a log in parallel, or of logs scanned at once when there "
+                        + "are several (default 1 thread, one log per processor)")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_INDEX)
+                .hasArg()
+                .desc("Per-day index next to the log: ignore (default), use or build")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_TOP)
+                .hasArg()
+                .desc("Report the top k cookies by count, with their counts")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_COUNTS)
+                .desc("Report hit counts alongside the cookies")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_FOLLOW)
+                .hasArg()
+                .optionalArg(true)
+                .argName("seconds")
+                .desc("Keep following the growing log, reporting changes every n seconds (default 5)")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_STATS)
+                .desc("Report rows read and skipped, and time per phase, as JSON after the answer")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_APPROXIMATE)
+                .hasArg()
+                .optionalArg(true)
+                .argName("counters")
+                .desc("Find the most active cookies approximately, in a fixed number of counters (default 100000)")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_VERIFY)
+                .desc("With --approximate, count the candidate cookies exactly in a second pass")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_SPILL_AFTER)
+                .hasArg()
+                .argName("cookies")
+                .desc("Count exactly, spilling to temporary files whenever a table holds this many cookies")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_ZONE)
+                .hasArg()
+                .argName("id")
+                .desc("Count the dates on the wall clock of this time zone, converting each timestamp's offset")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_BUCKET)
+                .hasArg()
+                .argName("minutes")
+                .desc("Report every window of this many minutes of the dates, counted in one pass")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_PIPELINE)
+                .hasArg()
+                .optionalArg(true)
+                .argName("parsers")
+                .desc("Read, parse and count the log in overlapping stages, with n parsing threads (default 2)")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_RESULT_CACHE)
+                .hasArg()
+                .argName("dir")
+                .desc("Keep answers in this directory and repeat them while the logs are unchanged")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_RESULT_CACHE_BUDGET)
+                .hasArg()
+                .argName("MB")
+                .desc("Megabytes of answers the result cache keeps, least recently used evicted first (default 64)")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_INCLUDE)
+                .hasArg()
+                .argName("pattern")
+                .desc("Count only cookies with this id, or starting with the prefix before a trailing *; repeatable")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_EXCLUDE)
+                .hasArg()
+                .argName("pattern")
+                .desc("Leave out cookies with this id, or starting with the prefix before a trailing *; repeatable")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_INCLUDE_FILE)
+                .hasArg()
+                .argName("path")
+                .desc("File of --include patterns, one per line")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_EXCLUDE_FILE)
+                .hasArg()
+                .argName("path")
+                .desc("File of --exclude patterns, one per line, such as a deny-list")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_GROUP_BY)
+                .hasArg()
+                .argName("key")
+                .desc("Count cookies under a leading part of their id: prefix:<bytes> or segment:<character>")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_SERVE)
+                .desc("Stay up and answer queries, one line of CLI arguments each")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_PORT)
+                .hasArg()
+                .desc("Loopback port to accept queries on; queries are read from stdin without it")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_CACHE_SIZE)
+                .hasArg()
+                .desc("Bound on the distinct cookies held by cached count tables")
+                .get());
+
+        options.addOption(Option.builder()
+                .longOpt(ARG_CONVERT)
+                .hasArg()
+                .desc("Columnar file to write the single -f log to")
                 .get());
 
         options.addOption(Option.builder(ARG_HELP)
@@ -41,26 +263,25 @@ public class CliParser {
         return options;
     }
 
-    public CookieAnalysisRequest parse(String[] args) {
-        Options options = createOptions();
-        CommandLineParser parser = new DefaultParser();
-
+    /**
+     * Parses the arguments once and tells what they ask for: a conversion ({@code --convert}),
+     * server mode ({@code --serve}) or, by default, one analysis.
+     *
+     * @throws HelpRequestedException once the help is printed for {@code --help}
+     */
+    public CliCommand parseCommand(String[] args) {
         try {
-            CommandLine cmd = parser.parse(options, args);
+            CommandLine cmd = new DefaultParser().parse(createOptions(), args);
 
             if (cmd.hasOption(ARG_HELP)) {
                 printHelp();
-                System.exit(0);
+                throw new HelpRequestedException();
             }
-
-            String filePath = cmd.getOptionValue(ARG_FILE);
-            String dateStr = cmd.getOptionValue(ARG_DATE);
-
-            validateFilePath(filePath);
-            validateDate(dateStr);
-            
-            return new CookieAnalysisRequest(filePath, dateStr);
-
+            if (cmd.hasOption(ARG_CONVERT))
+                return new CliCommand.Convert(parseConversionOptions(cmd));
+            if (cmd.hasOption(ARG_SERVE))
+                return new CliCommand.Serve(parseServerOptions(cmd));
+            return new CliCommand.Analyze(parseRequest(cmd), parseResultCacheOptions(cmd));
         } catch (ParseException exp) {
             log.error("Error: {}", exp.getMessage());
             printHelp();
@@ -68,14 +289,244 @@ public class CliParser {
         }
     }
 
-    private void validateDate(String dateStr) {
+    /**
+     * Parses the arguments of one analysis, such as a query sent to the server.
+     *
+     * @throws IllegalArgumentException when they ask for a conversion or server mode instead
+     */
+    public CookieAnalysisRequest parse(String[] args) {
+        if (parseCommand(args) instanceof CliCommand.Analyze analyze)
+            return analyze.request();
+        throw new IllegalArgumentException("Expected a query, not --" + ARG_SERVE + " or --" + ARG_CONVERT);
+    }
+
+    private ConversionOptions parseConversionOptions(CommandLine cmd) throws ParseException {
+        rejectOtherOptions(cmd, ARG_CONVERT, Set.of(ARG_FILE, ARG_CONVERT));
+        if (!cmd.hasOption(ARG_FILE))
+            throw new MissingOptionException("Missing required option: f");
+        if (cmd.getOptionValues(ARG_FILE).length > 1)
+            throw new ParseException("--" + ARG_CONVERT + " converts a single log, not "
+                    + String.join(", ", cmd.getOptionValues(ARG_FILE)));
+        String logPath = cmd.getOptionValue(ARG_FILE);
+        String output = cmd.getOptionValue(ARG_CONVERT);
+        validateFilePath(logPath);
+        validateFilePath(output);
+        return new ConversionOptions(Path.of(logPath), Path.of(output));
+    }
+
+    private ServerOptions parseServerOptions(CommandLine cmd) throws ParseException {
+        rejectOtherOptions(cmd, ARG_SERVE, Set.of(ARG_SERVE, ARG_PORT, ARG_CACHE_SIZE));
+        return new ServerOptions(
+                parsePositiveInt(cmd.getOptionValue(ARG_PORT), 0, "port"),
+                parsePositiveInt(cmd.getOptionValue(ARG_CACHE_SIZE), (int) ServerOptions.DEFAULT_CACHE_COOKIES,
+                        "cache size"));
+    }
+
+    /**
+     * @return the result cache to answer from ({@code --result-cache}), or {@code null} for none
+     */
+    private ResultCacheOptions parseResultCacheOptions(CommandLine cmd) {
+        if (!cmd.hasOption(ARG_RESULT_CACHE)) {
+            if (cmd.hasOption(ARG_RESULT_CACHE_BUDGET))
+                throw new IllegalArgumentException("--result-cache-budget only applies with --result-cache");
+            return null;
+        }
+        String directory = cmd.getOptionValue(ARG_RESULT_CACHE);
+        validateFilePath(directory);
+        if (cmd.hasOption(ARG_FOLLOW))
+            throw new IllegalArgumentException("--follow reports a changing log and cannot use --result-cache");
+        int budgetMegabytes = parsePositiveInt(cmd.getOptionValue(ARG_RESULT_CACHE_BUDGET),
+                (int) (ResultCacheOptions.DEFAULT_BUDGET_BYTES >> 20), "result cache budget");
+        return new ResultCacheOptions(Path.of(directory), (long) budgetMegabytes << 20);
+    }
+
+    private static void rejectOtherOptions(CommandLine cmd, String mode, Set<String> allowed) throws ParseException {
+        for (Option option : cmd.getOptions()) {
+            if (!allowed.contains(option.getKey()))
+                throw new ParseException("--" + mode + " cannot be combined with " + (option.getLongOpt() != null
+                        ? "--" + option.getLongOpt() : "-" + option.getOpt()));
+        }
+    }
+
+    private CookieAnalysisRequest parseRequest(CommandLine cmd) throws ParseException {
+        if (!cmd.hasOption(ARG_FILE))
+            throw new MissingOptionException("Missing required option: f");
+        if (cmd.hasOption(ARG_PORT) || cmd.hasOption(ARG_CACHE_SIZE))
+            throw new ParseException("--port and --cache-size only apply with --serve");
+        String[] filePaths = cmd.getOptionValues(ARG_FILE);
+        for (String filePath : filePaths) {
+            validateFilePath(filePath);
+        }
+        List<String> dates = parseDates(cmd);
+        if (cmd.hasOption(ARG_VERIFY) && !cmd.hasOption(ARG_APPROXIMATE))
+            throw new IllegalArgumentException("--verify only applies with --approximate");
+        if (cmd.hasOption(ARG_SPILL_AFTER) && cmd.hasOption(ARG_APPROXIMATE))
+            throw new IllegalArgumentException("--spill-after counts exactly and cannot be combined with --approximate");
+        if (cmd.hasOption(ARG_FOLLOW)
+                && (cmd.hasOption(ARG_APPROXIMATE) || cmd.hasOption(ARG_VERIFY) || cmd.hasOption(ARG_SPILL_AFTER)))
+            throw new IllegalArgumentException(
+                    "--follow counts exactly and cannot be combined with --approximate, --verify or --spill-after");
+        if ((cmd.hasOption(ARG_ZONE) || cmd.hasOption(ARG_BUCKET))
+                && (cmd.hasOption(ARG_APPROXIMATE) || cmd.hasOption(ARG_SPILL_AFTER) || cmd.hasOption(ARG_FOLLOW)))
+            throw new IllegalArgumentException(
+                    "--zone and --bucket count exactly and cannot be combined with --approximate, --spill-after or --follow");
+        if (cmd.hasOption(ARG_PIPELINE) && (cmd.hasOption(ARG_THREADS) || cmd.hasOption(ARG_PARSER)))
+            throw new IllegalArgumentException("--pipeline has parsing threads of its own and replaces --threads and --parser");
+
+        return CookieAnalysisRequest.builder()
+                .filePaths(List.of(filePaths))
+                .dates(dates)
+                .sorted(cmd.hasOption(ARG_SORTED))
+                .parser(parseParserType(cmd.getOptionValue(ARG_PARSER)))
+                .threads(parsePositiveInt(cmd.getOptionValue(ARG_THREADS), 0, "thread count"))
+                .index(parseIndexMode(cmd.getOptionValue(ARG_INDEX)))
+                .top(parsePositiveInt(cmd.getOptionValue(ARG_TOP), 0, "top count"))
+                .counts(cmd.hasOption(ARG_COUNTS))
+                .followSeconds(cmd.hasOption(ARG_FOLLOW)
+                        ? parsePositiveInt(cmd.getOptionValue(ARG_FOLLOW), DEFAULT_FOLLOW_SECONDS, "follow interval")
+                        : 0)
+                .stats(cmd.hasOption(ARG_STATS))
+                .approximate(cmd.hasOption(ARG_APPROXIMATE)
+                        ? parseSketchCounters(cmd.getOptionValue(ARG_APPROXIMATE))
+                        : 0)
+                .verify(cmd.hasOption(ARG_VERIFY))
+                .spillAfter(parsePositiveInt(cmd.getOptionValue(ARG_SPILL_AFTER), 0, "spill threshold"))
+                .zone(parseZone(cmd.getOptionValue(ARG_ZONE)))
+                .bucketMinutes(parseBucketMinutes(cmd.getOptionValue(ARG_BUCKET)))
+                .pipeline(cmd.hasOption(ARG_PIPELINE)
+                        ? parsePositiveInt(cmd.getOptionValue(ARG_PIPELINE), DEFAULT_PIPELINE_PARSERS, "parser count")
+                        : 0)
+                .includes(parsePatterns(cmd, ARG_INCLUDE, ARG_INCLUDE_FILE))
+                .excludes(parsePatterns(cmd, ARG_EXCLUDE, ARG_EXCLUDE_FILE))
+                .groupBy(cmd.getOptionValue(ARG_GROUP_BY))
+                .build();
+    }
+
+    private List<String> parseDates(CommandLine cmd) throws ParseException {
+        Set<String> dates = new LinkedHashSet<>();
+        if (cmd.hasOption(ARG_DATE)) {
+            for (String dateStr : cmd.getOptionValues(ARG_DATE)) {
+                validateDate(dateStr);
+                dates.add(dateStr);
+            }
+        }
+
+        if (cmd.hasOption(ARG_FROM) || cmd.hasOption(ARG_TO)) {
+            if (!cmd.hasOption(ARG_FROM) || !cmd.hasOption(ARG_TO))
+                throw new MissingOptionException("Options --from and --to must be given together");
+            LocalDate from = validateDate(cmd.getOptionValue(ARG_FROM));
+            LocalDate to = validateDate(cmd.getOptionValue(ARG_TO));
+            if (from.isAfter(to))
+                throw new IllegalArgumentException("Invalid date range. --from is after --to: " + from + " > " + to);
+            if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS)
+                throw new ParseException("Date range " + from + " to " + to + " is longer than " + MAX_RANGE_DAYS
+                        + " days; query it in several runs");
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                dates.add(date.toString());
+            }
+        }
+
+        if (dates.isEmpty() && !cmd.hasOption(ARG_FOLLOW))
+            throw new MissingOptionException("Missing required option: d");
+        return new ArrayList<>(dates);
+    }
+
+    private LocalDate validateDate(String dateStr) {
         try {
-            LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE);
+            return LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE);
         } catch (DateTimeParseException e) {
             throw new IllegalArgumentException("Invalid date format. Expected yyyy-MM-dd: " + dateStr);
         }
     }
 
+    private LogParserType parseParserType(String value) {
+        if (value == null)
+            return LogParserType.STRING;
+        try {
+            return LogParserType.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid parser. Expected string or mapped: " + value);
+        }
+    }
+
+    private IndexMode parseIndexMode(String value) {
+        if (value == null)
+            return IndexMode.IGNORE;
+        try {
+            return IndexMode.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid index mode. Expected ignore, use or build: " + value);
+        }
+    }
+
+    private ZoneId parseZone(String value) {
+        if (value == null)
+            return null;
+        try {
+            return ZoneId.of(value);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid zone. Expected a region such as Europe/Paris or an offset: "
+                    + value);
+        }
+    }
+
+    private int parseBucketMinutes(String value) {
+        int minutes = parsePositiveInt(value, 0, "bucket length");
+        if (minutes > 0 && (minutes > 24 * 60 || 24 * 60 % minutes != 0))
+            throw new IllegalArgumentException("Invalid bucket length. Expected minutes dividing a day: " + value);
+        return minutes;
+    }
+
+    /**
+     * Collects the patterns given one by one and those listed in the file, skipping blank lines and
+     * lines starting with {@code #}.
+     */
+    private List<String> parsePatterns(CommandLine cmd, String option, String fileOption) {
+        List<String> patterns = new ArrayList<>();
+        if (cmd.hasOption(option)) {
+            patterns.addAll(List.of(cmd.getOptionValues(option)));
+        }
+        if (cmd.hasOption(fileOption)) {
+            Path path = Path.of(cmd.getOptionValue(fileOption));
+            try {
+                for (String line : Files.readAllLines(path)) {
+                    String pattern = line.strip();
+                    if (!pattern.isEmpty() && !pattern.startsWith("#")) {
+                        patterns.add(pattern);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Failed to read the pattern file " + path + ": " + e.getMessage(), e);
+            }
+        }
+        for (String pattern : patterns) {
+            if (pattern.isEmpty())
+                throw new IllegalArgumentException("Invalid --" + option + " pattern. Expected a cookie id or prefix*");
+        }
+        return patterns;
+    }
+
+    private int parseSketchCounters(String value) {
+        int counters = parsePositiveInt(value, DEFAULT_SKETCH_COUNTERS, "counter count");
+        if (counters > MAX_SKETCH_COUNTERS)
+            throw new IllegalArgumentException("Invalid counter count. Expected at most " + MAX_SKETCH_COUNTERS + ": "
+                    + value);
+        return counters;
+    }
+
+    private int parsePositiveInt(String value, int defaultValue, String name) {
+        if (value == null)
+            return defaultValue;
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= 1)
+                return parsed;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid " + name + ". Expected a positive integer: " + value);
+    }
+
     private void validateFilePath(String filePath) {
         if (filePath == null || filePath.isEmpty()) {
             throw new IllegalArgumentException("File path cannot be null or empty");
@@ -85,8 +536,35 @@ public class CliParser {
     private void printHelp() {
             log.info("Usage: java -jar CookieAnalyzer.jar [options]");
             log.info("Options:");
-            log.info("  -f, --file <file_path>    Path to the log file (required)");
-            log.info("  -d, --date <yyyy-MM-dd>  Date in yyyy-MM-dd format (required)");
+            log.info("  -f, --file <path>        Log file, directory or glob (required); repeat for several logs");
+            log.info("  -d, --date <yyyy-MM-dd>  Date in yyyy-MM-dd format; repeat for several dates");
+            log.info("      --from <yyyy-MM-dd>  First date of an inclusive date range (with --to)");
+            log.info("      --to <yyyy-MM-dd>    Last date of an inclusive date range (with --from)");
+            log.info("  -s, --sorted             Log is sorted by timestamp; seek to the date instead of scanning");
+            log.info("      --parser <engine>    Parser engine: string (default) or mapped");
+            log.info("      --threads <n>        Threads scanning a log, or logs scanned at once (default 1; a log per CPU)");
+            log.info("      --index <mode>       Per-day index next to the log: ignore (default), use or build");
+            log.info("      --top <k>            Report the top k cookies by count, with their counts");
+            log.info("      --counts             Report hit counts alongside the cookies");
+            log.info("      --follow [seconds]   Follow the growing log (today's date without -d), reporting changes");
+            log.info("      --stats              Report rows read and skipped, and time per phase, as JSON");
+            log.info("      --approximate [n]    Approximate the most active cookies in n counters (default 100000)");
+            log.info("      --verify             With --approximate, recount the candidates exactly in a second pass");
+            log.info("      --spill-after <n>    Count exactly, spilling a table to temporary files once it holds n cookies");
+            log.info("      --zone <id>          Count the dates on this zone's wall clock, e.g. Europe/Paris or +05:30");
+            log.info("      --bucket <minutes>   Report every window of this many minutes, e.g. 60 for hours");
+            log.info("      --pipeline [n]       Read, parse and count in overlapping stages, with n parsers (default 2)");
+            log.info("      --result-cache <dir> Keep answers in dir and repeat them while the logs are unchanged");
+            log.info("      --result-cache-budget <MB>  Megabytes of answers kept, least recently used evicted (default 64)");
+            log.info("      --include <pattern>  Count only this cookie id, or ids starting with the prefix before a *");
+            log.info("      --exclude <pattern>  Leave out this cookie id, or ids starting with the prefix before a *");
+            log.info("      --include-file <path>  File of --include patterns, one per line");
+            log.info("      --exclude-file <path>  File of --exclude patterns, one per line, such as a deny-list");
+            log.info("      --group-by <key>     Count cookies by prefix:<bytes> or segment:<character> of their id");
+            log.info("      --serve              Stay up and answer queries, one line of CLI arguments each");
+            log.info("      --port <n>           With --serve, accept queries on this loopback port instead of stdin");
+            log.info("      --cache-size <n>     With --serve, bound on the cookies held by cached counts (default 2000000)");
+            log.info("      --convert <path>     Convert the single -f log into a columnar file at path, then exit");
             log.info("  -h, --help               Show this help message");
             log.info("");
             log.info("Example:");
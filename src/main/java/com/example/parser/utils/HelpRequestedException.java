@@ -0,0 +1,14 @@
+package com.example.parser.utils;
+
+/**
+ * Thrown by {@link CliParser#parseCommand} once it printed the help for {@code --help}, so that callers
+ * embedding the parser decide how to end the run instead of the parser exiting the JVM.
+ */
+public class HelpRequestedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HelpRequestedException() {
+        super("Help requested");
+    }
+}
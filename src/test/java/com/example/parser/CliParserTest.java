@@ -1,9 +1,18 @@
 package com.example.parser;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import com.example.parser.cookie.ConversionOptions;
 import com.example.parser.cookie.CookieAnalysisRequest;
+import com.example.parser.cookie.IndexMode;
+import com.example.parser.cookie.LogParserType;
+import com.example.parser.cookie.ResultCacheOptions;
+import com.example.parser.cookie.ServerOptions;
+import com.example.parser.utils.CliCommand;
 import com.example.parser.utils.CliParser;
+import com.example.parser.utils.HelpRequestedException;
 import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 
@@ -28,8 +37,94 @@ public class CliParserTest {
         CookieAnalysisRequest request = cliParser.parse(args);
 
         assertNotNull(request);
-        assertEquals(testFile.toString(), request.filePath());
-        assertEquals("2023-12-25", request.dateStr());
+        assertEquals(List.of(testFile.toString()), request.filePaths());
+        assertEquals(List.of("2023-12-25"), request.dates());
+        assertFalse(request.sorted());
+    }
+
+    @Test
+    @DisplayName("Should collect repeated file options in order")
+    void parseRepeatedFileOptions(@TempDir Path tempDir) {
+        String[] args = {"-f", tempDir.toString(), "--file", "logs/*.csv.gz", "-d", "2023-12-25"};
+
+        CookieAnalysisRequest request = cliParser.parse(args);
+
+        assertEquals(List.of(tempDir.toString(), "logs/*.csv.gz"), request.filePaths());
+    }
+
+    @Test
+    @DisplayName("Should recognise server mode only when --serve is given")
+    void parseServerOptions() {
+        assertInstanceOf(CliCommand.Analyze.class,
+                cliParser.parseCommand(new String[]{"-f", "cookies.csv", "-d", "2023-12-25"}));
+        assertEquals(new CliCommand.Serve(new ServerOptions(0, ServerOptions.DEFAULT_CACHE_COOKIES)),
+                cliParser.parseCommand(new String[]{"--serve"}));
+        assertEquals(new CliCommand.Serve(new ServerOptions(7070, 500)),
+                cliParser.parseCommand(new String[]{"--serve", "--port", "7070", "--cache-size", "500"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parseCommand(new String[]{"--serve", "--port", "zero"}));
+        assertThrows(RuntimeException.class,
+                () -> cliParser.parseCommand(new String[]{"--serve", "-f", "cookies.csv"}));
+        assertThrows(RuntimeException.class,
+                () -> cliParser.parseCommand(new String[]{"-f", "cookies.csv", "-d", "2023-12-25", "--port", "7070"}));
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(new String[]{"--serve"}));
+    }
+
+    @Test
+    @DisplayName("Should parse conversion options only when --convert is given")
+    void parseConversionOptions() {
+        assertInstanceOf(CliCommand.Analyze.class,
+                cliParser.parseCommand(new String[]{"-f", "cookies.csv", "-d", "2023-12-25"}));
+        assertEquals(new CliCommand.Convert(new ConversionOptions(Path.of("cookies.csv"), Path.of("cookies.ccol"))),
+                cliParser.parseCommand(new String[]{"-f", "cookies.csv", "--convert", "cookies.ccol"}));
+        assertThrows(RuntimeException.class,
+                () -> cliParser.parseCommand(new String[]{"--convert", "cookies.ccol"}));
+        assertThrows(RuntimeException.class,
+                () -> cliParser.parseCommand(new String[]{"-f", "cookies.csv", "--convert", "cookies.ccol", "--top", "3"}));
+        assertThrows(RuntimeException.class, () -> cliParser.parseCommand(
+                new String[]{"-f", "cookies.csv", "-f", "more.csv", "--convert", "cookies.ccol"}));
+    }
+
+    @Test
+    @DisplayName("Should parse follow mode, with or without an interval and dates")
+    void parseFollowMode(@TempDir Path tempDir) {
+        String file = tempDir.resolve("cookies.csv").toString();
+
+        assertEquals(0, cliParser.parse(new String[]{"-f", file, "-d", "2023-12-25"}).followSeconds());
+        CookieAnalysisRequest today = cliParser.parse(new String[]{"-f", file, "--follow"});
+        assertEquals(5, today.followSeconds());
+        assertEquals(List.of(), today.dates());
+        assertEquals(30, cliParser.parse(new String[]{"-f", file, "--follow", "30", "-d", "2023-12-25"}).followSeconds());
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(new String[]{"-f", file, "--follow", "0"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", file, "--follow", "--approximate", "100"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", file, "--follow", "--spill-after", "1000"}));
+    }
+
+    @Test
+    @DisplayName("Should enable sorted mode when sorted flag is present")
+    void parseSortedFlagEnablesSortedMode(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+        String[] args = {"-f", testFile.toString(), "-d", "2023-12-25", "--sorted"};
+
+        CookieAnalysisRequest request = cliParser.parse(args);
+
+        assertTrue(request.sorted());
+    }
+
+    @Test
+    @DisplayName("Should select the parser engine from the parser option")
+    void parseParserOptionSelectsEngine(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        assertEquals(LogParserType.STRING, cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"}).parser());
+        assertEquals(LogParserType.MAPPED,
+                cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--parser", "mapped"}).parser());
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--parser", "regex"}));
     }
 
     @Test
@@ -80,6 +175,211 @@ public class CliParserTest {
         assertThrows(IllegalArgumentException.class, () -> cliParser.parse(args));
     }
 
+    @Test
+    @DisplayName("Should parse the thread count and reject non-positive values")
+    void parseThreadsOption(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        assertEquals(0, cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"}).threads());
+        assertEquals(8, cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--threads", "8"}).threads());
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--threads", "0"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--threads", "many"}));
+    }
+
+    @Test
+    @DisplayName("Should collect repeated date options")
+    void parseRepeatedDateOptions(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+        String[] args = {"-f", testFile.toString(), "-d", "2023-12-25", "-d", "2023-12-24", "--date", "2023-12-25"};
+
+        CookieAnalysisRequest request = cliParser.parse(args);
+
+        assertEquals(List.of("2023-12-25", "2023-12-24"), request.dates());
+    }
+
+    @Test
+    @DisplayName("Should expand an inclusive date range")
+    void parseDateRange(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+        String[] args = {"-f", testFile.toString(), "--from", "2023-12-30", "--to", "2024-01-02"};
+
+        CookieAnalysisRequest request = cliParser.parse(args);
+
+        assertEquals(List.of("2023-12-30", "2023-12-31", "2024-01-01", "2024-01-02"), request.dates());
+    }
+
+    @Test
+    @DisplayName("Should reject incomplete, reversed or overlong date ranges")
+    void parseInvalidDateRange(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        assertThrows(RuntimeException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "--from", "2023-12-30"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "--from", "2023-12-30", "--to", "2023-12-01"}));
+        RuntimeException overlong = assertThrows(RuntimeException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "--from", "0001-01-01", "--to", "9999-12-31"}));
+        assertInstanceOf(org.apache.commons.cli.ParseException.class, overlong.getCause());
+        assertEquals(5 * 366, cliParser.parse(new String[]{"-f", testFile.toString(), "--from", "2020-01-01",
+                "--to", LocalDate.of(2020, 1, 1).plusDays(5 * 366 - 1).toString()}).dates().size());
+    }
+
+    @Test
+    @DisplayName("Should parse the index mode")
+    void parseIndexOption(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        assertEquals(IndexMode.IGNORE, cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"}).index());
+        assertEquals(IndexMode.BUILD,
+                cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--index", "build"}).index());
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--index", "always"}));
+    }
+
+    @Test
+    @DisplayName("Should parse the top and counts options")
+    void parseTopAndCountsOptions(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        CookieAnalysisRequest defaults = cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"});
+        CookieAnalysisRequest top = cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--top", "20", "--counts"});
+
+        assertEquals(0, defaults.top());
+        assertFalse(defaults.counts());
+        assertEquals(20, top.top());
+        assertTrue(top.counts());
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--top", "-1"}));
+    }
+
+    @Test
+    @DisplayName("Should parse the stats flag")
+    void parseStatsOption(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        assertFalse(cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"}).stats());
+        assertTrue(cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--stats"}).stats());
+    }
+
+    @Test
+    @DisplayName("Should parse the approximate, verify and spill options")
+    void parseApproximateOptions(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        assertEquals(0, cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"}).approximate());
+        assertEquals(100_000, cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--approximate"}).approximate());
+        CookieAnalysisRequest verified = cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--approximate", "500", "--verify"});
+        assertEquals(500, verified.approximate());
+        assertTrue(verified.verify());
+        assertThrows(IllegalArgumentException.class,
+                () -> cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--verify"}));
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(new String[]{
+                "-f", testFile.toString(), "-d", "2023-12-25", "--approximate", "2147483647"}));
+        assertEquals(1_000, cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--spill-after", "1000"}).spillAfter());
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(new String[]{
+                "-f", testFile.toString(), "-d", "2023-12-25", "--spill-after", "1000", "--approximate"}));
+    }
+
+    @Test
+    @DisplayName("Should parse the zone and bucket options")
+    void parseZoneAndBucketOptions(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        CookieAnalysisRequest request = cliParser.parse(new String[]{
+                "-f", testFile.toString(), "-d", "2023-12-25", "--zone", "Europe/Paris", "--bucket", "60"});
+        assertEquals(java.time.ZoneId.of("Europe/Paris"), request.zone());
+        assertEquals(60, request.bucketMinutes());
+        assertNull(cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"}).zone());
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--zone", "Mars/Olympus"}));
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--bucket", "7"}));
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--bucket", "60", "--approximate"}));
+    }
+
+    @Test
+    @DisplayName("Should parse the pipeline option")
+    void parsePipelineOption(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+
+        assertEquals(0, cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"}).pipeline());
+        assertEquals(2, cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--pipeline"}).pipeline());
+        assertEquals(4, cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--pipeline", "4"}).pipeline());
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25", "--pipeline", "--threads", "4"}));
+    }
+
+    @Test
+    @DisplayName("Should parse cookie filters, from the command line and from files, and the grouping")
+    void parseFilterOptions(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+        Path denyList = tempDir.resolve("deny.txt");
+        java.nio.file.Files.writeString(denyList, "# known bots\nbot*\n\n  crawler42  \n");
+
+        CookieAnalysisRequest request = cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25",
+                "--include", "site*", "--include", "AtY0laUfhglK3lC7", "--exclude", "site9*",
+                "--exclude-file", denyList.toString(), "--group-by", "segment:-"});
+        assertEquals(List.of("site*", "AtY0laUfhglK3lC7"), request.includes());
+        assertEquals(List.of("site9*", "bot*", "crawler42"), request.excludes());
+        assertEquals("segment:-", request.groupBy());
+
+        CookieAnalysisRequest plain = cliParser.parse(new String[]{"-f", testFile.toString(), "-d", "2023-12-25"});
+        assertEquals(List.of(), plain.includes());
+        assertNull(plain.groupBy());
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(new String[]{"-f", testFile.toString(),
+                "-d", "2023-12-25", "--group-by", "suffix:3"}));
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parse(new String[]{"-f", testFile.toString(),
+                "-d", "2023-12-25", "--include-file", tempDir.resolve("missing.txt").toString()}));
+    }
+
+    @Test
+    @DisplayName("Should parse the result cache options")
+    void parseResultCacheOptions(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+        String[] args = {"-f", testFile.toString(), "-d", "2023-12-25", "--result-cache", tempDir.toString(),
+                "--result-cache-budget", "8"};
+
+        assertNull(((CliCommand.Analyze) cliParser.parseCommand(
+                new String[]{"-f", testFile.toString(), "-d", "2023-12-25"})).resultCache());
+        CliCommand.Analyze cached = (CliCommand.Analyze) cliParser.parseCommand(args);
+        assertEquals(new ResultCacheOptions(tempDir, 8L * 1024 * 1024), cached.resultCache());
+        assertEquals(List.of(testFile.toString()), cached.request().filePaths());
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parseCommand(new String[]{
+                "-f", testFile.toString(), "--follow", "--result-cache", tempDir.toString()}));
+        assertThrows(IllegalArgumentException.class, () -> cliParser.parseCommand(new String[]{
+                "-f", testFile.toString(), "-d", "2023-12-25", "--result-cache-budget", "8"}));
+    }
+
+    @Test
+    @DisplayName("Should report a help request instead of exiting")
+    void parseHelpThrowsHelpRequested(@TempDir Path tempDir) throws Exception {
+        Path testFile = tempDir.resolve("cookies.csv");
+        java.nio.file.Files.createFile(testFile);
+        String[] args = {"-f", testFile.toString(), "-d", "2023-12-25", "-h"};
+
+        assertThrows(HelpRequestedException.class, () -> cliParser.parse(args));
+    }
+
     @Test
     @DisplayName("Should handle empty arguments array")
     void parseEmptyArgumentsThrowsRuntimeException() {
@@ -0,0 +1,118 @@
+package com.example.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.parser.cookie.CookieAnalysisRequest;
+import com.example.parser.cookie.CookieAnalysisService;
+import com.example.parser.cookie.CookieCount;
+import com.example.parser.cookie.LogParserType;
+import com.example.parser.cookie.MostActiveCookieAnalyzer;
+
+class CookieAnalysisServiceTest {
+
+    @TempDir
+    Path tempDir;
+    private Path logFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logFile = tempDir.resolve("cookies.csv");
+        Files.writeString(logFile, """
+                cookie,timestamp
+                AtY0laUfhglK3lC7,2018-12-09T14:19:00+00:00
+                SAZuXPGUrfbcn5UA,2018-12-09T10:13:00+00:00
+                5UAVanZf6UtGyKVS,2018-12-09T07:25:00+00:00
+                AtY0laUfhglK3lC7,2018-12-09T06:19:00+00:00
+                SAZuXPGUrfbcn5UA,2018-12-08T22:03:00+00:00
+                4sMM2LxV07bPJzwf,2018-12-08T21:30:00+00:00
+                fbcn5UAVanZf6UtG,2018-12-08T09:30:00+00:00
+                4sMM2LxV07bPJzwf,2018-12-07T23:30:00+00:00
+                """);
+    }
+
+    @Test
+    @DisplayName("Batch - should answer every request as the analyzer does, shared scans included")
+    void answersBatchLikeAnalyzer() throws Exception {
+        List<CookieAnalysisRequest> requests = List.of(
+                CookieAnalysisRequest.builder().filePath(logFile.toString()).date("2018-12-09").build(),
+                CookieAnalysisRequest.builder().filePath(logFile.toString()).date("2018-12-08").date("2018-12-07")
+                        .top(2).build(),
+                CookieAnalysisRequest.builder().filePath(logFile.toString()).date("2018-12-09").top(5).build(),
+                CookieAnalysisRequest.builder().filePath(logFile.toString()).date("2018-12-08")
+                        .parser(LogParserType.MAPPED).build(),
+                CookieAnalysisRequest.builder().filePath(logFile.toString()).date("2018-12-09").approximate(10).build());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        try (CookieAnalysisService service = new CookieAnalysisService(2)) {
+            List<CompletableFuture<Map<LocalDate, List<CookieCount>>>> futures = service.analyzeAll(requests);
+
+            assertEquals(requests.size(), futures.size());
+            for (int i = 0; i < requests.size(); i++) {
+                assertEquals(analyzer.getCookieCountsByDate(requests.get(i)), futures.get(i).get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Failures - should fail only the futures of requests that cannot be answered")
+    void failsOnlyBadRequests() throws Exception {
+        try (CookieAnalysisService service = new CookieAnalysisService(2)) {
+            CompletableFuture<Map<LocalDate, List<CookieCount>>> missing = service.analyze(CookieAnalysisRequest
+                    .builder().filePath(tempDir.resolve("missing.csv").toString()).date("2018-12-09").build());
+            CompletableFuture<Map<LocalDate, List<CookieCount>>> follow = service.analyze(CookieAnalysisRequest
+                    .builder().filePath(logFile.toString()).date("2018-12-09").followSeconds(1).build());
+            CompletableFuture<Map<LocalDate, List<CookieCount>>> found = service.analyze(
+                    new CookieAnalysisRequest(logFile.toString(), "2018-12-09"));
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> missing.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+            e = assertThrows(ExecutionException.class, () -> follow.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            assertEquals(List.of("AtY0laUfhglK3lC7"), found.get(5, TimeUnit.SECONDS).get(LocalDate.of(2018, 12, 9))
+                    .stream().map(CookieCount::cookie).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Cancellation - should drop a cancelled analysis without stalling the executor")
+    void cancelsQueuedAnalysis() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch blocked = new CountDownLatch(1);
+        try {
+            executor.submit(() -> {
+                blocked.await();
+                return null;
+            });
+            CookieAnalysisService service = new CookieAnalysisService(new MostActiveCookieAnalyzer(), executor);
+            CompletableFuture<Map<LocalDate, List<CookieCount>>> cancelled = service.analyze(
+                    new CookieAnalysisRequest(logFile.toString(), "2018-12-09"));
+            CompletableFuture<Map<LocalDate, List<CookieCount>>> kept = service.analyze(
+                    new CookieAnalysisRequest(logFile.toString(), "2018-12-08"));
+
+            assertTrue(cancelled.cancel(true));
+            blocked.countDown();
+
+            assertTrue(cancelled.isCancelled());
+            assertEquals(3, kept.get(5, TimeUnit.SECONDS).get(LocalDate.of(2018, 12, 8)).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,6 +3,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -10,12 +11,23 @@ import org.slf4j.Logger;
 
 import com.example.parser.cookie.CookieAnalysisRequest;
 import com.example.parser.cookie.CookieApplication;
+import com.example.parser.cookie.CookieCount;
 import com.example.parser.cookie.MostActiveCookieAnalyzer;
+import com.example.parser.cookie.ResultCacheOptions;
+import com.example.parser.utils.CliCommand;
 import com.example.parser.utils.CliParser;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -50,7 +62,7 @@ class CookieApplicationTest {
     @Test
     @DisplayName("Successful execution returns most active cookies and logs info")  
     void runSuccessfulExecutionReturnsMostActiveCookies() throws Exception {
-        when(cliParser.parse(testArgs)).thenReturn(testRequest);
+        when(cliParser.parseCommand(testArgs)).thenReturn(new CliCommand.Analyze(testRequest, null));
         when(mostActiveCookieAnalyzer.getMostActiveCookies(testRequest)).thenReturn(expectedCookies);
 
         LogCaptor logCaptor = LogCaptor.forClass(CookieApplication.class);
@@ -59,7 +71,7 @@ class CookieApplicationTest {
 
         assertNotNull(result);
         assertEquals(expectedCookies, result);
-        verify(cliParser).parse(testArgs);
+        verify(cliParser).parseCommand(testArgs);
         verify(mostActiveCookieAnalyzer).getMostActiveCookies(testRequest);
         for (String cookie : expectedCookies) {
             assertTrue(logCaptor.getInfoLogs().contains("Most active cookie: " + cookie));
@@ -67,12 +79,112 @@ class CookieApplicationTest {
     }
 
 
+    @Test
+    @DisplayName("Several dates are analyzed in one call and logged per date")
+    void runMultipleDatesLogsResultsPerDate() throws Exception {
+        CookieAnalysisRequest multiDateRequest = CookieAnalysisRequest.builder()
+                .filePath("cookie_log.csv").date("2018-12-08").date("2018-12-09").build();
+        Map<LocalDate, List<String>> byDate = new LinkedHashMap<>();
+        byDate.put(LocalDate.parse("2018-12-08"), List.of("SAZuXPGUrfbcn5UA"));
+        byDate.put(LocalDate.parse("2018-12-09"), expectedCookies);
+        when(cliParser.parseCommand(testArgs)).thenReturn(new CliCommand.Analyze(multiDateRequest, null));
+        when(mostActiveCookieAnalyzer.getMostActiveCookiesByDate(multiDateRequest)).thenReturn(byDate);
+
+        LogCaptor logCaptor = LogCaptor.forClass(CookieApplication.class);
+
+        List<String> result = cookieApplication.run(testArgs);
+
+        assertEquals(List.of("SAZuXPGUrfbcn5UA", "AtY0laUfhglK3lC7", "SAZuXPGUrfbcn5UA"), result);
+        assertTrue(logCaptor.getInfoLogs().contains("Most active cookie on 2018-12-08: SAZuXPGUrfbcn5UA"));
+        assertTrue(logCaptor.getInfoLogs().contains("Most active cookie on 2018-12-09: AtY0laUfhglK3lC7"));
+        verify(mostActiveCookieAnalyzer, never()).getMostActiveCookies(any());
+    }
+
+    @Test
+    @DisplayName("Top-K request logs cookies with their hit counts")
+    void runTopRequestLogsCounts() throws Exception {
+        CookieAnalysisRequest topRequest = testRequest.toBuilder().top(2).build();
+        Map<LocalDate, List<CookieCount>> counts = Map.of(LocalDate.parse("2018-12-09"),
+                List.of(new CookieCount("AtY0laUfhglK3lC7", 2), new CookieCount("SAZuXPGUrfbcn5UA", 1)));
+        when(cliParser.parseCommand(testArgs)).thenReturn(new CliCommand.Analyze(topRequest, null));
+        when(mostActiveCookieAnalyzer.getCookieCountsByDate(topRequest)).thenReturn(counts);
+
+        LogCaptor logCaptor = LogCaptor.forClass(CookieApplication.class);
+
+        List<String> result = cookieApplication.run(testArgs);
+
+        assertEquals(expectedCookies, result);
+        assertTrue(logCaptor.getInfoLogs().contains("Top cookie on 2018-12-09: AtY0laUfhglK3lC7 (2 hits)"));
+        assertTrue(logCaptor.getInfoLogs().contains("Top cookie on 2018-12-09: SAZuXPGUrfbcn5UA (1 hits)"));
+    }
+
+    @Test
+    @DisplayName("Result cache repeats an answer without analysing until the log changes or it is evicted")
+    void runResultCacheServesRepeatedAnswers(@TempDir Path tempDir) throws Exception {
+        Path logFile = tempDir.resolve("cookie_log.csv");
+        Files.writeString(logFile, "cookie,timestamp\nAtY0laUfhglK3lC7,2018-12-09T14:19:00+00:00\n");
+        CookieAnalysisRequest request = new CookieAnalysisRequest(logFile.toString(), "2018-12-09");
+        when(cliParser.parseCommand(testArgs)).thenReturn(new CliCommand.Analyze(request,
+                new ResultCacheOptions(tempDir.resolve("cache"), ResultCacheOptions.DEFAULT_BUDGET_BYTES)));
+        when(mostActiveCookieAnalyzer.getMostActiveCookies(request)).thenReturn(expectedCookies);
+
+        LogCaptor logCaptor = LogCaptor.forClass(CookieApplication.class);
+
+        assertEquals(expectedCookies, cookieApplication.run(testArgs));
+        assertEquals(expectedCookies, cookieApplication.run(testArgs));
+        verify(mostActiveCookieAnalyzer, times(1)).getMostActiveCookies(request);
+        assertEquals(2, logCaptor.getInfoLogs().stream()
+                .filter("Most active cookie: SAZuXPGUrfbcn5UA"::equals).count());
+        assertTrue(logCaptor.getInfoLogs().stream().anyMatch(line -> line.startsWith("Served from the result cache")));
+
+        Files.writeString(logFile, "SAZuXPGUrfbcn5UA,2018-12-09T10:13:00+00:00\n", StandardOpenOption.APPEND);
+        cookieApplication.run(testArgs);
+        verify(mostActiveCookieAnalyzer, times(2)).getMostActiveCookies(request);
+
+        when(cliParser.parseCommand(testArgs)).thenReturn(new CliCommand.Analyze(request,
+                new ResultCacheOptions(tempDir.resolve("cache"), 1)));
+        cookieApplication.run(testArgs);
+        verify(mostActiveCookieAnalyzer, times(2)).getMostActiveCookies(request);
+        Files.writeString(logFile, "SAZuXPGUrfbcn5UA,2018-12-09T11:13:00+00:00\n", StandardOpenOption.APPEND);
+        cookieApplication.run(testArgs);
+        cookieApplication.run(testArgs);
+        verify(mostActiveCookieAnalyzer, times(4)).getMostActiveCookies(request);
+    }
+
+    @Test
+    @DisplayName("Result cache treats a corrupt answer file as a miss instead of trusting its lengths")
+    void runResultCacheIgnoresCorruptAnswer(@TempDir Path tempDir) throws Exception {
+        Path logFile = tempDir.resolve("cookie_log.csv");
+        Files.writeString(logFile, "cookie,timestamp\nAtY0laUfhglK3lC7,2018-12-09T14:19:00+00:00\n");
+        CookieAnalysisRequest request = new CookieAnalysisRequest(logFile.toString(), "2018-12-09");
+        Path cache = tempDir.resolve("cache");
+        when(cliParser.parseCommand(testArgs)).thenReturn(new CliCommand.Analyze(request,
+                new ResultCacheOptions(cache, ResultCacheOptions.DEFAULT_BUDGET_BYTES)));
+        when(mostActiveCookieAnalyzer.getMostActiveCookies(request)).thenReturn(expectedCookies);
+        cookieApplication.run(testArgs);
+
+        Path answer;
+        try (Stream<Path> files = Files.list(cache)) {
+            answer = files.filter(path -> path.toString().endsWith(".answer")).findFirst().orElseThrow();
+        }
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(answer))) {
+            out.writeInt(0x434B5243);
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertEquals(expectedCookies, cookieApplication.run(testArgs));
+        verify(mostActiveCookieAnalyzer, times(2)).getMostActiveCookies(request);
+        assertEquals(expectedCookies, cookieApplication.run(testArgs));
+        verify(mostActiveCookieAnalyzer, times(2)).getMostActiveCookies(request);
+    }
+
     @Test
     @DisplayName("IOException during file reading throws RuntimeException and logs error")
     void runIOExceptionThrowsRuntimeExceptionAndLogsError() throws Exception {
         String errorMessage = "File not found";
         IOException ioException = new IOException(errorMessage);
-        when(cliParser.parse(testArgs)).thenReturn(testRequest);
+        when(cliParser.parseCommand(testArgs)).thenReturn(new CliCommand.Analyze(testRequest, null));
         when(mostActiveCookieAnalyzer.getMostActiveCookies(testRequest)).thenThrow(ioException);
 
         LogCaptor logCaptor = LogCaptor.forClass(CookieApplication.class);
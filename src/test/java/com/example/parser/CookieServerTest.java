@@ -0,0 +1,103 @@
+package com.example.parser;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.parser.cookie.CookieServer;
+import com.example.parser.utils.CliParser;
+
+class CookieServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Socket session - should answer repeat queries and see changes to the log")
+    void answersQueriesOverSocket() throws Exception {
+        Path logFile = tempDir.resolve("cookies.csv");
+        Files.writeString(logFile, """
+                cookie,timestamp
+                AtY0laUfhglK3lC7,2018-12-09T14:19:00+00:00
+                SAZuXPGUrfbcn5UA,2018-12-09T10:13:00+00:00
+                AtY0laUfhglK3lC7,2018-12-09T07:25:00+00:00
+                """);
+
+        try (CookieServer server = new CookieServer(new CliParser(), 1_000);
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.start(0));
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            String query = "-f \"" + logFile + "\" -d 2018-12-09 --counts";
+            List<String> expected = List.of("Most active cookie on 2018-12-09: AtY0laUfhglK3lC7 (2 hits)");
+
+            out.println(query);
+            assertEquals(expected, readReply(in));
+            out.println(query);
+            assertEquals(expected, readReply(in));
+
+            Files.writeString(logFile, """
+                    SAZuXPGUrfbcn5UA,2018-12-09T06:13:00+00:00
+                    SAZuXPGUrfbcn5UA,2018-12-09T05:13:00+00:00
+                    """, StandardOpenOption.APPEND);
+            Files.setLastModifiedTime(logFile, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+            out.println(query);
+            assertEquals(List.of("Most active cookie on 2018-12-09: SAZuXPGUrfbcn5UA (3 hits)"), readReply(in));
+
+            out.println("-f " + logFile + " -d 2018-13-45");
+            List<String> error = readReply(in);
+            assertEquals(1, error.size());
+            assertTrue(error.get(0).startsWith("ERROR "), error.get(0));
+        }
+    }
+
+    @Test
+    @DisplayName("Stdin session - should answer each line until quit")
+    void answersQueriesFromReader() throws IOException {
+        CookieServer server = new CookieServer(new CliParser(), 1_000);
+        server.warmUp();
+        StringWriter output = new StringWriter();
+
+        server.serve(new BufferedReader(new StringReader("""
+                -f cookie_log.csv -d 2018-12-09
+
+                -f cookie_log.csv -d 2018-12-08 -d 2018-12-07 --help
+                quit
+                -f cookie_log.csv -d 2018-12-08
+                """)), new PrintWriter(output));
+
+        assertEquals("""
+                Most active cookie: AtY0laUfhglK3lC7
+                Most active cookie: SAZuXPGUrfbcn5UA
+
+                ERROR Help is not available in server mode
+
+                """, output.toString().replace(System.lineSeparator(), "\n"));
+    }
+
+    private static List<String> readReply(BufferedReader in) throws IOException {
+        List<String> reply = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            reply.add(line);
+        }
+        return reply;
+    }
+}
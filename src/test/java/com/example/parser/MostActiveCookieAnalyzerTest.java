@@ -3,11 +3,34 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.io.TempDir;
 import com.example.parser.cookie.CookieAnalysisRequest;
+import com.example.parser.cookie.CookieApplication;
+import com.example.parser.cookie.CookieCount;
+import com.example.parser.cookie.IndexMode;
+import com.example.parser.cookie.LogFollower;
+import com.example.parser.cookie.LogParserType;
 import com.example.parser.cookie.MostActiveCookieAnalyzer;
+import com.example.parser.cookie.ScanStats;
+import com.example.parser.utils.CliParser;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import nl.altindag.log.LogCaptor;
 import org.junit.jupiter.api.DisplayName;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,6 +50,14 @@ class MostActiveCookieAnalyzerTest {
         Files.writeString(testFile, content);
     }
 
+    private CookieAnalysisRequest sortedRequest(String dateStr) {
+        return CookieAnalysisRequest.builder().filePath(testFile.toString()).date(dateStr).sorted(true).build();
+    }
+
+    private CookieAnalysisRequest mappedRequest(String dateStr) {
+        return CookieAnalysisRequest.builder().filePath(testFile.toString()).date(dateStr).parser(LogParserType.MAPPED).build();
+    }
+
     @Test
     @DisplayName("Single most active cookie - should return one cookie with highest frequency")
     void testSingleMostActiveCookie() throws IOException {
@@ -164,4 +195,962 @@ class MostActiveCookieAnalyzerTest {
         assertEquals(1, result.size());
         assertEquals("validCookie", result.get(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Windows line endings - should count rows terminated by CRLF")
+    void testCrlfLineEndings() throws IOException {
+        createTestFile("cookie,timestamp\r\n"
+                + "cookieA,2018-12-09T14:19:00+00:00\r\n"
+                + "cookieB,2018-12-09T10:13:00+00:00\r\n"
+                + "cookieA,2018-12-09T07:25:00+00:00\r\n");
+        CookieAnalysisRequest request = new CookieAnalysisRequest(testFile.toString(), "2018-12-09");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        List<String> result = analyzer.getMostActiveCookies(request);
+
+        assertEquals(List.of("cookieA"), result);
+    }
+
+    @Test
+    @DisplayName("Large file - should stream files larger than the read buffer")
+    void testFileLargerThanReadBuffer() throws IOException {
+        StringBuilder csvContent = new StringBuilder("cookie,timestamp\n");
+        for (int i = 0; i < 20_000; i++) {
+            csvContent.append("cookie").append(i % 100).append(",2018-12-09T10:13:00+00:00\n");
+            csvContent.append("cookie").append(i % 7).append(",2018-12-08T10:13:00+00:00\n");
+        }
+        csvContent.append("cookie42,2018-12-09T23:59:00+00:00\n");
+
+        createTestFile(csvContent.toString());
+        CookieAnalysisRequest request = new CookieAnalysisRequest(testFile.toString(), "2018-12-09");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        List<String> result = analyzer.getMostActiveCookies(request);
+
+        assertEquals(List.of("cookie42"), result);
+    }
+
+    @Test
+    @DisplayName("Missing file - should throw IOException")
+    void testMissingFileThrowsIOException() {
+        CookieAnalysisRequest request = new CookieAnalysisRequest(tempDir.resolve("missing.csv").toString(), "2018-12-09");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        IOException exception = assertThrows(IOException.class, () -> analyzer.getMostActiveCookies(request));
+        assertEquals("Failed to read the log file", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Sorted mode - should find the target date block in a descending log")
+    void testSortedModeDescendingLog() throws IOException {
+        String csvContent = """
+            cookie,timestamp
+            AtY0laUfhglK3lC7,2018-12-09T14:19:00+00:00
+            SAZuXPGUrfbcn5UA,2018-12-09T10:13:00+00:00
+            5UAVanZf6UtGyKVS,2018-12-09T07:25:00+00:00
+            AtY0laUfhglK3lC7,2018-12-09T06:19:00+00:00
+            SAZuXPGUrfbcn5UA,2018-12-08T22:03:00+00:00
+            4sMM2LxV07bPJzwf,2018-12-08T21:30:00+00:00
+            fbcn5UAVanZf6UtG,2018-12-08T09:30:00+00:00
+            4sMM2LxV07bPJzwf,2018-12-07T23:30:00+00:00
+            """;
+
+        createTestFile(csvContent);
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        assertEquals(List.of("AtY0laUfhglK3lC7"),
+                analyzer.getMostActiveCookies(sortedRequest("2018-12-09")));
+        assertEquals(List.of("4sMM2LxV07bPJzwf"),
+                analyzer.getMostActiveCookies(sortedRequest("2018-12-07")));
+        assertEquals(3,
+                analyzer.getMostActiveCookies(sortedRequest("2018-12-08")).size());
+        assertTrue(analyzer.getMostActiveCookies(sortedRequest("2018-12-10")).isEmpty());
+        assertTrue(analyzer.getMostActiveCookies(sortedRequest("2018-12-06")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Sorted mode - should match the full scan on large sorted logs in either direction")
+    void testSortedModeMatchesFullScan() throws IOException {
+        List<String> rows = new ArrayList<>();
+        Random random = new Random(42);
+        LocalDate day = LocalDate.of(2018, 1, 1);
+        for (int d = 0; d < 60; d++, day = day.plusDays(1)) {
+            int rowsForDay = random.nextInt(40);
+            for (int i = 0; i < rowsForDay; i++) {
+                rows.add("cookie" + random.nextInt(10) + "," + day + "T12:00:00+00:00");
+                if (random.nextInt(25) == 0) {
+                    rows.add("malformedRow");
+                }
+            }
+        }
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (boolean descending : new boolean[]{false, true}) {
+            List<String> ordered = new ArrayList<>(rows);
+            if (descending) {
+                Collections.reverse(ordered);
+            }
+            createTestFile("cookie,timestamp\n" + String.join("\n", ordered) + "\n");
+
+            for (LocalDate date = LocalDate.of(2017, 12, 31); date.isBefore(day.plusDays(1)); date = date.plusDays(1)) {
+                List<String> expected = analyzer.getMostActiveCookies(new CookieAnalysisRequest(testFile.toString(), date.toString()));
+                List<String> actual = analyzer.getMostActiveCookies(sortedRequest(date.toString()));
+                assertEquals(new HashSet<>(expected), new HashSet<>(actual), "date " + date);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Mapped parser - should agree with the string parser on edge-case rows")
+    void testMappedParserMatchesStringParserOnEdgeCases() throws IOException {
+        String csvContent = "cookie,timestamp\n"
+                + "  cookieA , 2018-12-09T14:19:00+00:00  \n"
+                + "cookieA,2018-12-09T14:19:00+00:00\r\n"
+                + "cookieB,2018-12-09\n"
+                + "cookieC,2018-12-0\n"
+                + "\n"
+                + "   \n"
+                + "noComma2018-12-09T14:19:00+00:00\n"
+                + ",2018-12-09T01:00:00+00:00\n"
+                + "cookieD,2018-12-09T01:00:00+00:00,extra\n"
+                + "cookieD,invalid-date-format\n"
+                + "cookieE,2018-12-08T23:59:59+00:00\n"
+                + "cookieB,2018-12-09T23:00:00+00:00";
+
+        createTestFile(csvContent);
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        List<String> expected = analyzer.getMostActiveCookies(new CookieAnalysisRequest(testFile.toString(), "2018-12-09"));
+        List<String> actual = analyzer.getMostActiveCookies(mappedRequest("2018-12-09"));
+
+        assertEquals(new HashSet<>(List.of("cookieA", "cookieB")), new HashSet<>(expected));
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+    }
+
+    @Test
+    @DisplayName("Mapped parser - should match the string parser on a large log and in sorted mode")
+    void testMappedParserMatchesStringParser() throws IOException {
+        StringBuilder csvContent = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            csvContent.append("cookie").append(random.nextInt(500)).append(",2018-12-")
+                    .append(String.format("%02d", 20 - i / 5_000)).append("T10:13:00+00:00\n");
+        }
+
+        createTestFile(csvContent.toString());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (String date : List.of("2018-12-20", "2018-12-15", "2018-12-11", "2018-12-01")) {
+            List<String> expected = analyzer.getMostActiveCookies(new CookieAnalysisRequest(testFile.toString(), date));
+            assertEquals(new HashSet<>(expected), new HashSet<>(analyzer.getMostActiveCookies(mappedRequest(date))), date);
+            assertEquals(new HashSet<>(expected), new HashSet<>(analyzer.getMostActiveCookies(
+                    mappedRequest(date).toBuilder().sorted(true).build())), date);
+        }
+    }
+
+    @Test
+    @DisplayName("Parallel mode - should match the sequential result for every engine and chunk count")
+    void testParallelModeMatchesSequential() throws IOException {
+        StringBuilder csvContent = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(11);
+        for (int i = 0; i < 20_000; i++) {
+            csvContent.append("cookie").append(random.nextInt(300)).append(",2018-12-0")
+                    .append(1 + random.nextInt(3)).append("T10:13:00+00:00\n");
+        }
+
+        createTestFile(csvContent.toString());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        List<String> expected = analyzer.getMostActiveCookies(new CookieAnalysisRequest(testFile.toString(), "2018-12-02"));
+
+        for (LogParserType parser : LogParserType.values()) {
+            for (int threads : new int[]{2, 3, 8, 64}) {
+                CookieAnalysisRequest request = CookieAnalysisRequest.builder()
+                        .filePath(testFile.toString()).date("2018-12-02").parser(parser).threads(threads).build();
+                assertEquals(new HashSet<>(expected), new HashSet<>(analyzer.getMostActiveCookies(request)),
+                        parser + " with " + threads + " threads");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Parallel mode - should not count the header and handle files smaller than the chunk count")
+    void testParallelModeOnTinyFile() throws IOException {
+        createTestFile("cookie,2018-12-09T14:19:00+00:00\ncookieA,2018-12-09T14:19:00+00:00");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        CookieAnalysisRequest request = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).date("2018-12-09").threads(16).build();
+
+        assertEquals(List.of("cookieA"), analyzer.getMostActiveCookies(request));
+    }
+
+    @Test
+    @DisplayName("Multiple dates - should return per-date results matching one query per date")
+    void testMultipleDatesInSinglePass() throws IOException {
+        StringBuilder csvContent = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(5);
+        for (int day = 14; day >= 1; day--) {
+            for (int i = 0; i < 500; i++) {
+                csvContent.append("cookie").append(random.nextInt(40)).append(",2018-12-")
+                        .append(String.format("%02d", day)).append("T10:13:00+00:00\n");
+            }
+        }
+
+        createTestFile(csvContent.toString());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        List<String> dates = List.of("2018-12-03", "2018-12-01", "2018-12-14", "2018-12-20");
+
+        for (LogParserType parser : LogParserType.values()) {
+            for (boolean sorted : new boolean[]{false, true}) {
+                CookieAnalysisRequest request = CookieAnalysisRequest.builder()
+                        .filePath(testFile.toString()).dates(dates).parser(parser).sorted(sorted).threads(3).build();
+
+                Map<LocalDate, List<String>> result = analyzer.getMostActiveCookiesByDate(request);
+
+                assertEquals(List.of(LocalDate.parse("2018-12-01"), LocalDate.parse("2018-12-03"),
+                        LocalDate.parse("2018-12-14"), LocalDate.parse("2018-12-20")), new ArrayList<>(result.keySet()));
+                for (String date : dates) {
+                    List<String> expected = analyzer.getMostActiveCookies(new CookieAnalysisRequest(testFile.toString(), date));
+                    assertEquals(new HashSet<>(expected), new HashSet<>(result.get(LocalDate.parse(date))),
+                            parser + " sorted=" + sorted + " " + date);
+                }
+                assertTrue(result.get(LocalDate.parse("2018-12-20")).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Index - should answer from a built index without reading the log until the log changes")
+    void testIndexAnswersUntilLogChanges() throws IOException {
+        String csvContent = """
+            cookie,timestamp
+            cookieA,2018-12-09T14:19:00+00:00
+            cookieB,2018-12-09T10:13:00+00:00
+            cookieA,2018-12-09T07:25:00+00:00
+            cookieC,2018-12-08T22:03:00+00:00
+            cookieD,2018-13-45T22:03:00+00:00
+            """;
+        createTestFile(csvContent);
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest build = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).date("2018-12-09").date("2018-12-08").date("2018-12-07")
+                .index(IndexMode.BUILD).build();
+        CookieAnalysisRequest use = build.toBuilder().index(IndexMode.USE).build();
+
+        Map<LocalDate, List<String>> built = analyzer.getMostActiveCookiesByDate(build);
+
+        assertTrue(Files.exists(tempDir.resolve("test_cookies.csv.idx")));
+        assertEquals(List.of("cookieA"), built.get(LocalDate.parse("2018-12-09")));
+        assertEquals(List.of("cookieC"), built.get(LocalDate.parse("2018-12-08")));
+        assertTrue(built.get(LocalDate.parse("2018-12-07")).isEmpty());
+
+        // same size and modification time: the index still counts as fresh, so the new content is not read
+        FileTime modified = Files.getLastModifiedTime(testFile);
+        createTestFile(csvContent.replace("cookieA", "cookieZ"));
+        Files.setLastModifiedTime(testFile, modified);
+        assertEquals(built, analyzer.getMostActiveCookiesByDate(use));
+
+        Files.setLastModifiedTime(testFile, FileTime.fromMillis(modified.toMillis() + 5_000));
+        assertEquals(List.of("cookieZ"), analyzer.getMostActiveCookiesByDate(use).get(LocalDate.parse("2018-12-09")));
+    }
+
+    @Test
+    @DisplayName("Index - should merge the days spilled while building and answer from the scan when it cannot be written")
+    void testIndexBuildSpillsDays() throws IOException {
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(41);
+        String[] days = {"2018-12-07", "2018-12-08", "2018-12-09", "2018-12-08", "2018-12-09", "2018-12-07"};
+        for (int i = 0; i < 12_000; i++) {
+            csv.append("cookie").append(random.nextInt(300)).append(',').append(days[i / 2_000])
+                    .append("T10:00:00+00:00\n");
+        }
+        createTestFile(csv.toString());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest scan = CookieAnalysisRequest.builder().filePath(testFile.toString())
+                .date("2018-12-07").date("2018-12-08").date("2018-12-09").top(20).build();
+        Map<LocalDate, List<CookieCount>> expected = analyzer.getCookieCountsByDate(scan);
+
+        assertEquals(expected, analyzer.getCookieCountsByDate(scan.toBuilder().index(IndexMode.BUILD).build()));
+        assertEquals(expected, analyzer.getCookieCountsByDate(scan.toBuilder().index(IndexMode.USE).build()));
+
+        Path unwritable = tempDir.resolve("unwritable.csv");
+        Files.copy(testFile, unwritable);
+        Files.createDirectories(tempDir.resolve("unwritable.csv.idx.tmp").resolve("blocked"));
+        CookieAnalysisRequest build = scan.toBuilder().clearFilePaths().filePath(unwritable.toString())
+                .index(IndexMode.BUILD).build();
+        assertEquals(expected, analyzer.getCookieCountsByDate(build));
+        assertFalse(Files.exists(tempDir.resolve("unwritable.csv.idx")));
+    }
+
+    @Test
+    @DisplayName("Index - should spill each day of a log whose dates descend as soon as the next one starts")
+    void testIndexBuildSpillsDescendingDays() throws IOException {
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(43);
+        String[] days = {"2018-12-09", "2018-12-08", "2018-12-07"};
+        for (int i = 0; i < 6_000; i++) {
+            csv.append("cookie").append(random.nextInt(300)).append(',').append(days[i / 2_000])
+                    .append("T10:00:00+00:00\n");
+        }
+        createTestFile(csv.toString());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest scan = CookieAnalysisRequest.builder().filePath(testFile.toString())
+                .date("2018-12-07").date("2018-12-08").date("2018-12-09").top(20).build();
+        Map<LocalDate, List<CookieCount>> expected = analyzer.getCookieCountsByDate(scan);
+
+        try (LogCaptor logCaptor = LogCaptor.forName("com.example.parser.cookie.LogIndex")) {
+            logCaptor.setLogLevelToDebug();
+            assertEquals(expected, analyzer.getCookieCountsByDate(scan.toBuilder().index(IndexMode.BUILD).build()));
+            List<String> spilled = logCaptor.getDebugLogs().stream().filter(line -> line.startsWith("Spilled")).toList();
+            assertEquals(2, spilled.size(), spilled.toString());
+            assertTrue(spilled.get(0).endsWith("of 2018-12-09"));
+            assertTrue(spilled.get(1).endsWith("of 2018-12-08"));
+        }
+    }
+
+    @Test
+    @DisplayName("Index - should scan the log when no index exists and ignore an index unless asked")
+    void testIndexFallsBackToScan() throws IOException {
+        createTestFile("cookie,timestamp\ncookieA,2018-12-09T14:19:00+00:00\n");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest use = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).date("2018-12-09").index(IndexMode.USE).build();
+
+        assertEquals(List.of("cookieA"), analyzer.getMostActiveCookies(use));
+        assertFalse(Files.exists(tempDir.resolve("test_cookies.csv.idx")));
+
+        analyzer.getMostActiveCookies(use.toBuilder().index(IndexMode.BUILD).build());
+        FileTime modified = Files.getLastModifiedTime(testFile);
+        createTestFile("cookie,timestamp\ncookieB,2018-12-09T14:19:00+00:00\n");
+        Files.setLastModifiedTime(testFile, modified);
+
+        assertEquals(List.of("cookieB"), analyzer.getMostActiveCookies(new CookieAnalysisRequest(testFile.toString(), "2018-12-09")));
+    }
+
+    @Test
+    @DisplayName("Top-K - should return the K highest counts with ties broken by cookie")
+    void testTopCookiesWithCounts() throws IOException {
+        String csvContent = """
+            cookie,timestamp
+            cookieA,2018-12-09T14:19:00+00:00
+            cookieB,2018-12-09T10:13:00+00:00
+            cookieA,2018-12-09T07:25:00+00:00
+            cookieC,2018-12-09T06:19:00+00:00
+            cookieB,2018-12-09T05:19:00+00:00
+            cookieA,2018-12-09T04:19:00+00:00
+            cookieD,2018-12-09T03:19:00+00:00
+            cookieC,2018-12-09T02:19:00+00:00
+            cookieE,2018-12-08T22:03:00+00:00
+            """;
+        createTestFile(csvContent);
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest request = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).date("2018-12-09").top(3).build();
+
+        List<CookieCount> top = analyzer.getCookieCountsByDate(request).get(LocalDate.parse("2018-12-09"));
+
+        assertEquals(List.of(new CookieCount("cookieA", 3), new CookieCount("cookieB", 2), new CookieCount("cookieC", 2)), top);
+        assertEquals(List.of(new CookieCount("cookieA", 3)),
+                analyzer.getCookieCountsByDate(request.toBuilder().top(1).build()).get(LocalDate.parse("2018-12-09")));
+        assertEquals(4, analyzer.getCookieCountsByDate(request.toBuilder().top(20).build())
+                .get(LocalDate.parse("2018-12-09")).size());
+        assertEquals(List.of(new CookieCount("cookieA", 3)),
+                analyzer.getCookieCountsByDate(request.toBuilder().top(0).build()).get(LocalDate.parse("2018-12-09")));
+    }
+
+    @Test
+    @DisplayName("Top-K - should give the same answer from the index as from a scan")
+    void testTopCookiesFromIndexMatchScan() throws IOException {
+        StringBuilder csvContent = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(3);
+        for (int i = 0; i < 5_000; i++) {
+            csvContent.append("cookie").append(random.nextInt(200)).append(",2018-12-0")
+                    .append(1 + random.nextInt(2)).append("T10:13:00+00:00\n");
+        }
+        createTestFile(csvContent.toString());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (int k : new int[]{0, 1, 7, 20, 500}) {
+            CookieAnalysisRequest scan = CookieAnalysisRequest.builder()
+                    .filePath(testFile.toString()).date("2018-12-01").date("2018-12-02").top(k).build();
+            Map<LocalDate, List<CookieCount>> expected = analyzer.getCookieCountsByDate(scan);
+            Map<LocalDate, List<CookieCount>> fromIndex = analyzer.getCookieCountsByDate(
+                    scan.toBuilder().index(k == 0 ? IndexMode.BUILD : IndexMode.USE).build());
+
+            for (LocalDate date : expected.keySet()) {
+                assertEquals(new HashSet<>(expected.get(date)), new HashSet<>(fromIndex.get(date)), "k=" + k);
+                if (k > 0) {
+                    assertEquals(expected.get(date), fromIndex.get(date), "k=" + k);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Many distinct cookies - should count exactly across table growth for every engine")
+    void testManyDistinctCookies() throws IOException {
+        StringBuilder csvContent = new StringBuilder("cookie,timestamp\n");
+        Map<String, Integer> expectedCounts = new HashMap<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 60_000; i++) {
+            String cookie = "c" + Integer.toHexString(random.nextInt(40_000)) + (i % 5 == 0 ? "é" : "");
+            csvContent.append(cookie).append(",2018-12-09T10:13:00+00:00\n");
+            expectedCounts.merge(cookie, 1, Integer::sum);
+        }
+        createTestFile(csvContent.toString());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        int maxCount = expectedCounts.values().stream().max(Integer::compare).orElseThrow();
+        Set<String> expected = new HashSet<>();
+        expectedCounts.forEach((cookie, count) -> {
+            if (count == maxCount) {
+                expected.add(cookie);
+            }
+        });
+
+        for (LogParserType parser : LogParserType.values()) {
+            CookieAnalysisRequest request = CookieAnalysisRequest.builder()
+                    .filePath(testFile.toString()).date("2018-12-09").parser(parser).threads(2).top(50_000).build();
+
+            List<CookieCount> counts = analyzer.getCookieCountsByDate(request).get(LocalDate.parse("2018-12-09"));
+
+            assertEquals(expectedCounts.size(), counts.size(), parser.toString());
+            counts.forEach(count -> assertEquals(expectedCounts.get(count.cookie()), count.count(), count.cookie()));
+            assertEquals(expected, new HashSet<>(analyzer.getMostActiveCookies(request.toBuilder().top(0).build())));
+        }
+    }
+
+    @Test
+    @DisplayName("Gzip input - should match the plain log for every engine, index and multi-chunk lines")
+    void testGzipLogMatchesPlainLog() throws IOException {
+        StringBuilder csvContent = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(17);
+        for (int i = 0; i < 80_000; i++) {
+            csvContent.append("cookie").append(random.nextInt(400)).append(",2018-12-0")
+                    .append(1 + random.nextInt(3)).append("T10:13:00+00:00\n");
+        }
+        csvContent.append("x".repeat(3 * 1024 * 1024)).append(",2018-12-02T10:13:00+00:00");
+        createTestFile(csvContent.toString());
+        Path gzipFile = tempDir.resolve("test_cookies.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+            out.write(csvContent.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest plain = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).date("2018-12-01").date("2018-12-02").top(20).build();
+        Map<LocalDate, List<CookieCount>> expected = analyzer.getCookieCountsByDate(plain);
+
+        for (LogParserType parser : LogParserType.values()) {
+            CookieAnalysisRequest gzip = plain.toBuilder().clearFilePaths().filePath(gzipFile.toString()).parser(parser).build();
+            assertEquals(expected, analyzer.getCookieCountsByDate(gzip), parser.toString());
+            assertEquals(expected, analyzer.getCookieCountsByDate(gzip.toBuilder().sorted(true).threads(4).build()),
+                    parser + " ignoring sorted and threads");
+        }
+        CookieAnalysisRequest indexed = plain.toBuilder().clearFilePaths().filePath(gzipFile.toString()).index(IndexMode.BUILD).build();
+        assertEquals(expected, analyzer.getCookieCountsByDate(indexed));
+        assertTrue(Files.exists(tempDir.resolve("test_cookies.csv.gz.idx")));
+        assertEquals(expected, analyzer.getCookieCountsByDate(indexed.toBuilder().index(IndexMode.USE).build()));
+    }
+
+    @Test
+    @DisplayName("Zstd input - should be rejected with an IOException")
+    void testZstdLogIsRejected() throws IOException {
+        Path zstdFile = tempDir.resolve("test_cookies.csv.zst");
+        Files.write(zstdFile, new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0, 0, 0});
+
+        IOException e = assertThrows(IOException.class, () -> new MostActiveCookieAnalyzer()
+                .getMostActiveCookies(new CookieAnalysisRequest(zstdFile.toString(), "2018-12-09")));
+        assertTrue(e.getCause().getMessage().contains("zstd"), e.getCause().getMessage());
+    }
+
+    @Test
+    @DisplayName("Several logs - should merge directory, glob and file inputs and skip logs of other dates")
+    void testShardedLogsAreMerged() throws IOException {
+        Path shards = Files.createDirectory(tempDir.resolve("shards"));
+        StringBuilder all = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(19);
+        for (int hour = 23; hour >= 0; hour--) {
+            StringBuilder shard = new StringBuilder("cookie,timestamp\n");
+            for (int i = 0; i < 500; i++) {
+                String row = "cookie" + random.nextInt(60) + String.format(",2018-12-09T%02d:%02d:00+00:00%n", hour, 59 - i % 60);
+                shard.append(row);
+                all.append(row);
+            }
+            Files.writeString(shards.resolve(String.format("cookies-2018-12-09-%02d.csv", hour)), shard);
+        }
+        Files.writeString(shards.resolve("cookies-2018-12-08-23.csv"),
+                "cookie,timestamp\nskipped,2018-12-09T00:00:00+00:00\nskipped,2018-12-09T00:00:00+00:00\n");
+        Path unnamed = Files.writeString(tempDir.resolve("older.csv"),
+                "cookie,timestamp\nolder,2018-12-07T10:00:00+00:00\nolder,2018-12-06T10:00:00+00:00\n");
+        createTestFile(all.toString());
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        Map<LocalDate, List<CookieCount>> expected = analyzer.getCookieCountsByDate(
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-09").top(100).build());
+
+        for (LogParserType parser : LogParserType.values()) {
+            CookieAnalysisRequest fromDirectory = CookieAnalysisRequest.builder()
+                    .filePath(shards.toString()).filePath(unnamed.toString()).date("2018-12-09").top(100).parser(parser).build();
+            assertEquals(expected, analyzer.getCookieCountsByDate(fromDirectory), parser.toString());
+            assertEquals(expected, analyzer.getCookieCountsByDate(fromDirectory.toBuilder().sorted(true).build()));
+            assertEquals(expected, analyzer.getCookieCountsByDate(fromDirectory.toBuilder().clearFilePaths()
+                    .filePath(shards.resolve("cookies-2018-12-0?-*.csv").toString()).threads(3).build()));
+        }
+
+        CookieAnalysisRequest indexed = CookieAnalysisRequest.builder()
+                .filePath(shards.toString()).date("2018-12-09").top(100).index(IndexMode.BUILD).build();
+        assertEquals(expected, analyzer.getCookieCountsByDate(indexed));
+        assertEquals(expected, analyzer.getCookieCountsByDate(indexed.toBuilder().index(IndexMode.USE).build()));
+        assertThrows(IOException.class, () -> analyzer.getMostActiveCookies(CookieAnalysisRequest.builder()
+                .filePath(shards.resolve("*.tsv").toString()).date("2018-12-09").build()));
+        assertEquals(List.of("skipped"), analyzer.getMostActiveCookies(CookieAnalysisRequest.builder()
+                .filePath(shards.resolve("cookies-2018-12-08-23.csv").toString()).date("2018-12-09").build()),
+                "a file named on its own is read whatever its name says");
+    }
+
+    @Test
+    @DisplayName("Follow mode - should count appended rows, wait for partial lines and survive rotation and truncation")
+    void testFollowGrowingLog() throws IOException {
+        LocalDate date = LocalDate.parse("2018-12-09");
+        createTestFile("cookie,timestamp\nA,2018-12-09T10:00:00+00:00\nB,2018-12-09T1");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest request = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).date("2018-12-09").followSeconds(1).counts(true).build();
+
+        try (LogFollower follower = analyzer.follow(request)) {
+            assertEquals(List.of(new CookieCount("A", 1)), follower.poll().get(date));
+
+            Files.writeString(testFile, "1:00:00+00:00\nB,2018-12-09T12:00:00+00:00\nB,2018-12-08T12:00:00+00:00\n",
+                    StandardOpenOption.APPEND);
+            assertEquals(List.of(new CookieCount("B", 2)), follower.poll().get(date));
+
+            Path rotated = tempDir.resolve("test_cookies.csv.1");
+            Files.move(testFile, rotated);
+            Files.writeString(rotated, "C,2018-12-09T13:00:00+00:00\nC,2018-12-09T13:00:00+00:00\n",
+                    StandardOpenOption.APPEND);
+            createTestFile("cookie,timestamp\nC,2018-12-09T14:00:00+00:00\n");
+            assertEquals(List.of(new CookieCount("C", 3)), follower.poll().get(date));
+
+            createTestFile("cookie,timestamp\nA,2018-12-09T15:00:00+00:00\n");
+            assertEquals(List.of(new CookieCount("C", 3)), follower.poll().get(date));
+            Files.writeString(testFile, "cookie,timestamp\n");
+            Files.writeString(testFile, "A,2018-12-09T16:00:00+00:00\n".repeat(3),
+                    StandardOpenOption.APPEND);
+            assertEquals(List.of(new CookieCount("A", 5)), follower.poll().get(date));
+        }
+    }
+
+    @Test
+    @DisplayName("Scan stats - should count rows read, matched and skipped by reason with every engine")
+    void testScanStats() throws IOException {
+        String header = "cookie,timestamp\n";
+        createTestFile(header
+                + "A,2018-12-09T10:00:00+00:00\n"
+                + "   \n"
+                + "noComma\n"
+                + "B,2018-12\n"
+                + "C,not-a-date-at-all\n"
+                + "D,2018-12-08T10:00:00+00:00\n"
+                + "A,2018-12-09T11:00:00+00:00\n");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (LogParserType parser : LogParserType.values()) {
+            for (int threads : new int[]{1, 2}) {
+                ScanStats stats = new ScanStats();
+                CookieAnalysisRequest request = CookieAnalysisRequest.builder().filePath(testFile.toString())
+                        .date("2018-12-09").parser(parser).threads(threads).build();
+
+                assertEquals(List.of(new CookieCount("A", 2)),
+                        analyzer.getCookieCountsByDate(request, stats).get(LocalDate.parse("2018-12-09")));
+                String engine = parser + " x" + threads;
+                assertEquals(Files.size(testFile) - header.length(), stats.bytesRead(), engine);
+                assertEquals(7, stats.rowsScanned(), engine);
+                assertEquals(2, stats.rowsMatched(), engine);
+                assertEquals(1, stats.rowsSkipped(ScanStats.SkipReason.BLANK), engine);
+                assertEquals(2, stats.rowsSkipped(ScanStats.SkipReason.MALFORMED), engine);
+                assertEquals(1, stats.rowsSkipped(ScanStats.SkipReason.INVALID_DATE), engine);
+                assertEquals(1, stats.rowsSkipped(ScanStats.SkipReason.OTHER_DATE), engine);
+                assertEquals(1, stats.distinctCookies(), engine);
+                assertEquals(1, stats.logsRead(), engine);
+                assertTrue(stats.phaseNanos().containsKey(ScanStats.Phase.SCAN), engine);
+                assertTrue(stats.toJson().startsWith("{\"bytesRead\":"), engine);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Scan stats - should log the first invalid dates once per analysis, however many workers scan")
+    void testInvalidDatesLoggedOncePerAnalysis() throws IOException {
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        for (int i = 0; i < 4_000; i++) {
+            csv.append("cookie").append(i % 7).append(i % 100 == 0 ? ",not-a-date\n" : ",2018-12-09T10:00:00+00:00\n");
+        }
+        createTestFile(csv.toString());
+        Path second = tempDir.resolve("second.csv");
+        Files.writeString(second, csv);
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (CookieAnalysisRequest request : List.of(
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-09")
+                        .parser(LogParserType.MAPPED).threads(4).build(),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-09").pipeline(3).build(),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).filePath(second.toString())
+                        .date("2018-12-09").build())) {
+            try (LogCaptor logCaptor = LogCaptor.forClass(ScanStats.class)) {
+                ScanStats stats = new ScanStats();
+                analyzer.getCookieCountsByDate(request, stats);
+                assertEquals(request.filePaths().size() * 40L, stats.rowsSkipped(ScanStats.SkipReason.INVALID_DATE));
+                assertEquals(6, logCaptor.getWarnLogs().size(), request.toString());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Approximate mode - should find the heavy hitters in few counters, bound the error and confirm on request")
+    void testApproximateHeavyHitters() throws IOException {
+        Map<String, Integer> expectedCounts = new HashMap<>();
+        List<String> rows = new ArrayList<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 20_000; i++) {
+            String cookie = i % 4 == 0 ? "heavy" + (i % 3) : "tail" + random.nextInt(5_000);
+            String date = i % 10 == 0 ? "2018-12-08" : "2018-12-09";
+            rows.add(cookie + "," + date + "T10:00:00+00:00");
+            if (date.equals("2018-12-09")) {
+                expectedCounts.merge(cookie, 1, Integer::sum);
+            }
+        }
+        createTestFile("cookie,timestamp\n" + String.join("\n", rows) + "\n");
+        Path shard = tempDir.resolve("shard.csv");
+        Files.writeString(shard, "cookie,timestamp\n" + String.join("\n", rows.subList(0, 5_000)) + "\n");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest exact = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).date("2018-12-09").top(3).build();
+        List<CookieCount> expected = analyzer.getCookieCountsByDate(exact).get(LocalDate.parse("2018-12-09"));
+
+        for (LogParserType parser : LogParserType.values()) {
+            for (int threads : new int[]{1, 3}) {
+                CookieAnalysisRequest approximate = exact.toBuilder()
+                        .parser(parser).threads(threads).approximate(100).build();
+                List<CookieCount> estimated =
+                        analyzer.getCookieCountsByDate(approximate).get(LocalDate.parse("2018-12-09"));
+
+                String engine = parser + " x" + threads;
+                assertEquals(expected.stream().map(CookieCount::cookie).toList(),
+                        estimated.stream().map(CookieCount::cookie).toList(), engine);
+                for (CookieCount count : estimated) {
+                    int trueCount = expectedCounts.get(count.cookie());
+                    assertTrue(count.count() >= trueCount, engine);
+                    assertTrue(count.count() - count.error() <= trueCount, engine);
+                }
+                assertEquals(expected, analyzer.getCookieCountsByDate(approximate.toBuilder().verify(true).build())
+                        .get(LocalDate.parse("2018-12-09")), engine);
+            }
+        }
+
+        CookieAnalysisRequest roomy = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).date("2018-12-09").approximate(10_000).build();
+        assertEquals(analyzer.getCookieCountsByDate(exact.toBuilder().top(0).build()),
+                analyzer.getCookieCountsByDate(roomy));
+
+        CookieAnalysisRequest sharded = exact.toBuilder().filePath(shard.toString()).approximate(100).verify(true).build();
+        Map<String, Integer> shardedCounts = new HashMap<>(expectedCounts);
+        rows.subList(0, 5_000).stream().filter(row -> row.contains(",2018-12-09"))
+                .forEach(row -> shardedCounts.merge(row.substring(0, row.indexOf(',')), 1, Integer::sum));
+        for (CookieCount count : analyzer.getCookieCountsByDate(sharded).get(LocalDate.parse("2018-12-09"))) {
+            assertEquals(shardedCounts.get(count.cookie()), count.count(), count.cookie());
+        }
+    }
+
+    @Test
+    @DisplayName("Approximate mode - verified ties should be reported once however many counters are merged")
+    void testVerifiedTiesMergedOnce() throws IOException {
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        for (int i = 0; i < 4_000; i++) {
+            csv.append(i < 1_000 ? "A" : "tail" + i).append(",2018-12-09T10:00:00+00:00\n");
+        }
+        createTestFile(csv.toString());
+        Path second = tempDir.resolve("second.csv");
+        Files.writeString(second, "cookie,timestamp\nB,2018-12-09T11:00:00+00:00\nC,2018-12-09T11:00:00+00:00\n");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (LogParserType parser : LogParserType.values()) {
+            CookieAnalysisRequest verified = CookieAnalysisRequest.builder().filePath(testFile.toString())
+                    .date("2018-12-09").parser(parser).threads(4).approximate(10).verify(true).build();
+            assertEquals(List.of("A"), analyzer.getMostActiveCookies(verified), parser.toString());
+            assertEquals(List.of("A"), analyzer.getMostActiveCookies(
+                    verified.toBuilder().filePath(second.toString()).build()), parser.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Spilling mode - should match the in-memory counts while holding few cookies at a time")
+    void testSpillingMatchesInMemory() throws IOException {
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(17);
+        for (int i = 0; i < 30_000; i++) {
+            String cookie = "cookie" + (int) Math.sqrt(random.nextInt(25_000_000));
+            csv.append(cookie).append(i % 5 == 0 ? ",2018-12-08" : ",2018-12-09").append("T10:00:00+00:00\n");
+        }
+        createTestFile(csv.toString());
+        Path shard = tempDir.resolve("shard.csv");
+        Files.writeString(shard, csv.substring(0, csv.indexOf("\n", csv.length() / 3) + 1));
+        Path tmp = Path.of(System.getProperty("java.io.tmpdir"));
+        long spillDirectories;
+        try (var files = Files.list(tmp)) {
+            spillDirectories = files.filter(file -> file.getFileName().toString().startsWith("cookie-spill")).count();
+        }
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (CookieAnalysisRequest exact : List.of(
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-09").date("2018-12-08").build(),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).filePath(shard.toString())
+                        .date("2018-12-09").build())) {
+            for (LogParserType parser : LogParserType.values()) {
+                for (int threads : new int[]{1, 3}) {
+                    CookieAnalysisRequest inMemory = exact.toBuilder().parser(parser).threads(threads).build();
+                    CookieAnalysisRequest spilling = inMemory.toBuilder().spillAfter(50).build();
+                    String engine = parser + " x" + threads;
+
+                    assertEquals(analyzer.getCookieCountsByDate(inMemory.toBuilder().top(25).build()),
+                            analyzer.getCookieCountsByDate(spilling.toBuilder().top(25).build()), engine);
+                    Map<LocalDate, List<CookieCount>> expected = analyzer.getCookieCountsByDate(inMemory);
+                    Map<LocalDate, List<CookieCount>> actual = analyzer.getCookieCountsByDate(spilling);
+                    assertEquals(expected.keySet(), actual.keySet(), engine);
+                    expected.forEach((date, counts) ->
+                            assertEquals(new HashSet<>(counts), new HashSet<>(actual.get(date)), engine));
+                }
+            }
+        }
+        try (var files = Files.list(tmp)) {
+            assertEquals(spillDirectories,
+                    files.filter(file -> file.getFileName().toString().startsWith("cookie-spill")).count());
+        }
+    }
+
+    @Test
+    @DisplayName("Columnar log - should answer like the CSV it was converted from, reading only the blocks needed")
+    void testColumnarMatchesCsv() throws IOException {
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(23);
+        String[] days = {"2018-12-07", "2018-12-08", "2018-12-09"};
+        for (int i = 0; i < 150_000; i++) {
+            String cookie = "cookie" + (int) Math.sqrt(random.nextInt(4_000_000));
+            csv.append(cookie).append(',').append(days[i / 50_000]).append("T10:00:00+00:00\n");
+        }
+        csv.append("badrow,not-a-date\n");
+        createTestFile(csv.toString());
+        Path columnar = tempDir.resolve("cookies.ccol");
+        new CookieApplication(new CliParser(), new MostActiveCookieAnalyzer())
+                .run(new String[]{"-f", testFile.toString(), "--convert", columnar.toString()});
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (CookieAnalysisRequest request : List.of(
+                new CookieAnalysisRequest(testFile.toString(), "2018-12-08"),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-07").date("2018-12-09")
+                        .date("2018-12-10").top(5).build(),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-09").approximate(5_000).build(),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-08").spillAfter(50).build())) {
+            CookieAnalysisRequest converted = request.toBuilder().clearFilePaths().filePath(columnar.toString()).build();
+            assertEquals(analyzer.getCookieCountsByDate(request), analyzer.getCookieCountsByDate(converted));
+        }
+
+        ScanStats stats = new ScanStats();
+        analyzer.getCookieCountsByDate(new CookieAnalysisRequest(columnar.toString(), "2018-12-09"), stats);
+        assertEquals(50_000, stats.rowsMatched());
+        assertTrue(stats.rowsScanned() < 100_000, "blocks of other days are skipped: " + stats.rowsScanned());
+        assertTrue(Files.size(columnar) < Files.size(testFile) / 4);
+        assertEquals(Map.of(LocalDate.of(2018, 12, 10), List.of()), analyzer.getCookieCountsByDate(
+                new CookieAnalysisRequest(columnar.toString(), "2018-12-10")));
+    }
+
+    @Test
+    @DisplayName("Time windows - should count per zone and bucket, with both engines parsing timestamps alike")
+    void testTimeWindows() throws IOException {
+        createTestFile("""
+                cookie,timestamp
+                cookieA,2018-12-10T03:30:00+00:00
+                cookieA,2018-12-09T22:45:00-05:00
+                cookieB,2018-12-09T14:19:00Z
+                cookieB,2018-12-09T09:05:30.250-05:00
+                cookieC,2018-12-09T03:00:00+00:00
+                """);
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+        CookieAnalysisRequest newYork = CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-09")
+                .zone(ZoneId.of("America/New_York")).build();
+
+        assertEquals(List.of("cookieA", "cookieB"), analyzer.getMostActiveCookies(newYork));
+        Map<LocalDateTime, List<CookieCount>> hourly =
+                analyzer.getCookieCountsByWindow(newYork.toBuilder().bucketMinutes(60).build());
+        assertEquals(List.of(LocalDateTime.of(2018, 12, 9, 9, 0), LocalDateTime.of(2018, 12, 9, 22, 0)),
+                List.copyOf(hourly.keySet()));
+        assertEquals(List.of(new CookieCount("cookieB", 2)), hourly.get(LocalDateTime.of(2018, 12, 9, 9, 0)));
+        assertEquals(List.of(new CookieCount("cookieA", 2)), hourly.get(LocalDateTime.of(2018, 12, 9, 22, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> analyzer.getCookieCountsByDate(newYork.toBuilder().bucketMinutes(60).build()));
+
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(29);
+        String[] offsets = {"Z", "z", "+00:00", "-05:00", "+05:30", "+14:00", "-12:00:30", "+19:00", "", "+5:00"};
+        for (int i = 0; i < 20_000; i++) {
+            csv.append("cookie").append(random.nextInt(300)).append(",2018-12-").append(7 + random.nextInt(5))
+                    .append(random.nextInt(20) == 0 ? 't' : 'T')
+                    .append(String.format("%02d:%02d", random.nextInt(random.nextInt(50) == 0 ? 30 : 24),
+                            random.nextInt(60)));
+            if (random.nextBoolean()) {
+                csv.append(String.format(":%02d", random.nextInt(60)));
+                if (random.nextInt(4) == 0) {
+                    csv.append('.').append(random.nextInt(1_000_000));
+                }
+            }
+            csv.append(offsets[random.nextInt(offsets.length)]).append('\n');
+        }
+        createTestFile(csv.toString());
+
+        for (CookieAnalysisRequest windows : List.of(
+                newYork.toBuilder().date("2018-12-10").bucketMinutes(60).top(3).build(),
+                newYork.toBuilder().zone(ZoneId.of("Asia/Kolkata")).bucketMinutes(15).top(2).build(),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-08").bucketMinutes(30)
+                        .top(3).build())) {
+            ScanStats expectedStats = new ScanStats();
+            Map<LocalDateTime, List<CookieCount>> expected = analyzer.getCookieCountsByWindow(windows, expectedStats);
+            assertTrue(expected.size() <= windows.dates().size() * 24 * 60 / windows.bucketMinutes());
+            for (int threads : new int[]{1, 3}) {
+                ScanStats stats = new ScanStats();
+                assertEquals(expected, analyzer.getCookieCountsByWindow(
+                        windows.toBuilder().parser(LogParserType.MAPPED).threads(threads).build(), stats));
+                assertEquals(expectedStats.rowsMatched(), stats.rowsMatched());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Time windows - should count a five-year range of one-minute windows, keeping only those with rows")
+    void testLongRangeOfShortWindows() throws IOException {
+        createTestFile("""
+                cookie,timestamp
+                cookieA,2022-06-01T12:00:30Z
+                cookieB,2022-06-01T12:00:59Z
+                cookieA,2022-06-01T12:00:10Z
+                cookieC,2019-01-01T00:00:00Z
+                """);
+        CookieAnalysisRequest.CookieAnalysisRequestBuilder request = CookieAnalysisRequest.builder()
+                .filePath(testFile.toString()).zone(ZoneId.of("UTC")).bucketMinutes(1);
+        LocalDate first = LocalDate.of(2018, 1, 1);
+        for (int day = 0; day < 1830; day++) {
+            request.date(first.plusDays(day).toString());
+        }
+
+        Map<LocalDateTime, List<CookieCount>> byWindow =
+                new MostActiveCookieAnalyzer().getCookieCountsByWindow(request.build());
+        assertEquals(Map.of(LocalDateTime.of(2019, 1, 1, 0, 0), List.of(new CookieCount("cookieC", 1)),
+                LocalDateTime.of(2022, 6, 1, 12, 0), List.of(new CookieCount("cookieA", 2))), byWindow);
+    }
+
+    @Test
+    @DisplayName("Pipeline - should count like the string parser across buffer boundaries, with one or several parsers")
+    void testPipelineMatchesStringParser() throws IOException {
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        Random random = new Random(31);
+        for (int i = 0; i < 120_000; i++) {
+            switch (random.nextInt(200)) {
+                case 0 -> csv.append("\n");
+                case 1 -> csv.append("noComma\n");
+                case 2 -> csv.append("cookieX,not-a-timestamp\r\n");
+                default -> csv.append("  cookie").append((int) Math.sqrt(random.nextInt(1_000_000))).append(" ,2018-12-")
+                        .append(String.format("%02d", 9 - i / 30_000)).append("T10:13:00+00:00\n");
+            }
+        }
+        csv.append("cookie1,2018-12-08T23:59:59+00:00");
+        createTestFile(csv.toString());
+        assertTrue(Files.size(testFile) > 3L * 1024 * 1024, "the log spans several pipeline buffers");
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        for (CookieAnalysisRequest request : List.of(
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-08").date("2018-12-07")
+                        .top(10).build(),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-08").sorted(true).top(10).build(),
+                CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-06").spillAfter(100).top(10)
+                        .build())) {
+            ScanStats expectedStats = new ScanStats();
+            Map<LocalDate, List<CookieCount>> expected = analyzer.getCookieCountsByDate(request, expectedStats);
+            for (int parsers : new int[]{1, 3}) {
+                ScanStats stats = new ScanStats();
+                assertEquals(expected, analyzer.getCookieCountsByDate(request.toBuilder().pipeline(parsers).build(), stats));
+                for (ScanStats.SkipReason reason : ScanStats.SkipReason.values()) {
+                    assertEquals(expectedStats.rowsSkipped(reason), stats.rowsSkipped(reason), reason + " x" + parsers);
+                }
+                assertEquals(expectedStats.rowsMatched(), stats.rowsMatched());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Filters and grouping - every engine should count only the selected cookies, by group")
+    void testCookieFiltersAndGrouping() throws IOException {
+        StringBuilder csv = new StringBuilder("cookie,timestamp\n");
+        List<String> cookies = new ArrayList<>();
+        Random random = new Random(37);
+        for (int i = 0; i < 60_000; i++) {
+            String cookie = "site" + random.nextInt(6) + "-" + (random.nextInt(3) == 0 ? "bot" : "user")
+                    + (int) Math.sqrt(random.nextInt(40_000)) + (i % 500 == 0 ? "\u00e9t\u00e9" : "");
+            cookies.add(cookie);
+            csv.append(cookie).append(",2018-12-09T10:00:00+00:00\n");
+        }
+        csv.append("badrow,not-a-date\n");
+        createTestFile(csv.toString());
+        Path columnar = tempDir.resolve("cookies.ccol");
+        new CookieApplication(new CliParser(), new MostActiveCookieAnalyzer())
+                .run(new String[]{"-f", testFile.toString(), "--convert", columnar.toString()});
+        MostActiveCookieAnalyzer analyzer = new MostActiveCookieAnalyzer();
+
+        CookieAnalysisRequest base = CookieAnalysisRequest.builder().filePath(testFile.toString()).date("2018-12-09")
+                .top(100_000).build();
+        List<CookieAnalysisRequest> requests = List.of(
+                base.toBuilder().exclude("site1-bot*").exclude("site2*").exclude("site3-user7").build(),
+                base.toBuilder().include("site4*").include("site5-user1").exclude("site4-bot*").build(),
+                base.toBuilder().groupBy("segment:-").build(),
+                base.toBuilder().exclude("site0*").groupBy("prefix:9").build());
+        for (CookieAnalysisRequest request : requests) {
+            Map<String, Integer> expected = new HashMap<>();
+            int filtered = 0;
+            for (String cookie : cookies) {
+                boolean included = request.includes().isEmpty()
+                        || request.includes().stream().anyMatch(pattern -> matches(pattern, cookie));
+                if (!included || request.excludes().stream().anyMatch(pattern -> matches(pattern, cookie))) {
+                    filtered++;
+                    continue;
+                }
+                String group = cookie;
+                if ("segment:-".equals(request.groupBy())) {
+                    group = cookie.substring(0, cookie.indexOf('-'));
+                } else if ("prefix:9".equals(request.groupBy())) {
+                    group = cookie.substring(0, Math.min(9, cookie.length()));
+                }
+                expected.merge(group, 1, Integer::sum);
+            }
+
+            for (CookieAnalysisRequest engine : List.of(request,
+                    request.toBuilder().parser(LogParserType.MAPPED).build(),
+                    request.toBuilder().parser(LogParserType.MAPPED).threads(3).build(),
+                    request.toBuilder().pipeline(2).build(),
+                    request.toBuilder().spillAfter(50).build(),
+                    request.toBuilder().clearFilePaths().filePath(columnar.toString()).build())) {
+                ScanStats stats = new ScanStats();
+                Map<String, Integer> counted = new HashMap<>();
+                for (CookieCount count : analyzer.getCookieCountsByDate(engine, stats).get(LocalDate.of(2018, 12, 9))) {
+                    counted.put(count.cookie(), count.count());
+                }
+                assertEquals(expected, counted, engine.toString());
+                assertEquals(filtered, stats.rowsSkipped(ScanStats.SkipReason.FILTERED), engine.toString());
+                assertEquals(cookies.size() - filtered, stats.rowsMatched(), engine.toString());
+            }
+        }
+
+        analyzer.getMostActiveCookies(base.toBuilder().index(IndexMode.BUILD).build());
+        assertEquals(analyzer.getCookieCountsByDate(requests.get(3)),
+                analyzer.getCookieCountsByDate(requests.get(3).toBuilder().index(IndexMode.USE).build()));
+    }
+
+    private static boolean matches(String pattern, String cookie) {
+        return pattern.endsWith("*") ? cookie.startsWith(pattern.substring(0, pattern.length() - 1))
+                : cookie.equals(pattern);
+    }
+}
@@ -1,13 +1,28 @@
 package com.example.parser;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.example.parser.cookie.CookieApplication;
+
 @SpringBootTest
 class ParserApplicationTests {
 
+	@Autowired
+	private CookieApplication cookieApplication;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void handWiredApplicationMatchesContext() {
+		String[] args = {"-f", "cookie_log.csv", "-d", "2018-12-09", "--top", "3"};
+
+		assertEquals(cookieApplication.run(args), FastParserApplication.createApplication().run(args));
+	}
+
 }